@@ -0,0 +1,89 @@
+package benchmarks;
+
+import commandparser.BadUsageException;
+import main.ServerApplication;
+import org.httpserver.BadRequestException;
+import org.httpserver.HttpMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+    @Param({"..", "."})
+    public String root;
+
+    @Param({"32", "0"})
+    public String cacheMegabytes;
+
+    @Setup
+    public void setUp() throws IOException, BadUsageException, BadRequestException {
+        application = new ServerApplication(new String[]{"-p", "0", "-r", root, "-c", cacheMegabytes},
+                new PrintStream(new ByteArrayOutputStream()));
+        hello = request("hello");
+        guess = request("guess");
+        missing = request("no/such/file");
+        directory = request("resources/moreStuff");
+        file = request("resources/test.txt");
+    }
+
+    @TearDown
+    public void tearDown() {
+        application.getServer().stop();
+    }
+
+    @Benchmark
+    public HttpMessage hello() {
+        return application.respond(hello);
+    }
+
+    @Benchmark
+    public HttpMessage guess() {
+        return application.respond(guess);
+    }
+
+    @Benchmark
+    public HttpMessage notFound() {
+        return application.respond(missing);
+    }
+
+    @Benchmark
+    public HttpMessage directoryListing() {
+        return application.respond(directory);
+    }
+
+    @Benchmark
+    public HttpMessage file() {
+        return application.respond(file);
+    }
+
+    private static HttpMessage request(String uri) throws BadRequestException {
+        return new HttpMessage("GET /" + uri + " HTTP/1.1\r\nHost: localhost\r\n\r\n");
+    }
+
+    private ServerApplication application;
+    private HttpMessage hello;
+    private HttpMessage guess;
+    private HttpMessage missing;
+    private HttpMessage directory;
+    private HttpMessage file;
+}
@@ -0,0 +1,60 @@
+package benchmarks;
+
+import main.CachedFileRepository;
+import main.FileRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileRepositoryBenchmark {
+    @Param({"../resources"})
+    public String root;
+
+    @Param({"test.txt", "sloane.jpg", "britain.pdf"})
+    public String file;
+
+    @Setup
+    public void setUp() {
+        uncached = new FileRepository(root);
+        cached = new CachedFileRepository(root, 64L * 1024 * 1024);
+    }
+
+    @Benchmark
+    public byte[] fileData() {
+        return uncached.fileData(file);
+    }
+
+    @Benchmark
+    public byte[] cachedFileData() {
+        return cached.fileData(file);
+    }
+
+    @Benchmark
+    public boolean statUncached() {
+        return uncached.isDirectory(file) || uncached.isFile(file);
+    }
+
+    @Benchmark
+    public boolean statCached() {
+        return cached.isDirectory(file) || cached.isFile(file);
+    }
+
+    private FileRepository uncached;
+    private CachedFileRepository cached;
+}
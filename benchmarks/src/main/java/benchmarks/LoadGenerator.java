@@ -0,0 +1,159 @@
+package benchmarks;
+
+import commandparser.BadUsageException;
+import commandparser.CommandParser;
+import org.HdrHistogram.Histogram;
+import org.httpserver.HttpMessage;
+import server.MessageReader;
+
+import java.io.BufferedInputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LoadGenerator {
+    public static final String DefaultMix =
+            "hello:40,guess:10,ping:2,resources:10,resources/moreStuff/page:10,resources/test.txt:15,resources/sloane.jpg:10,resources/britain.pdf:3";
+
+    public LoadGenerator(String[] args, PrintStream printStream) throws BadUsageException {
+        this.printStream = printStream;
+        this.commandParser = new CommandParser();
+        addCommands();
+        commandParser.parseTokens(args);
+        address = new InetSocketAddress(commandParser.getString("-h"), commandParser.getInt("-p"));
+        connections = commandParser.getInt("-c");
+        seconds = commandParser.getInt("-d");
+        warmupSeconds = commandParser.getInt("-w");
+        rate = commandParser.getInt("-r");
+        mix = parseMix(commandParser.getString("-m"));
+        errors = new AtomicLong();
+    }
+    public static void main(String[] args) throws Exception {
+        new LoadGenerator(args, System.out).run();
+    }
+    public void addCommands() {
+        commandParser.addCommand("-h", "127.0.0.1");
+        commandParser.addUsage("-h", "-h <hostname>");
+        commandParser.addCommand("-p", 80);
+        commandParser.addUsage("-p", "-p <port>");
+        commandParser.addCommand("-c", 16);
+        commandParser.addUsage("-c", "-c <connections>");
+        commandParser.addCommand("-d", 30);
+        commandParser.addUsage("-d", "-d <seconds>");
+        commandParser.addCommand("-w", 5);
+        commandParser.addUsage("-w", "-w <warmupSeconds>");
+        commandParser.addCommand("-r", 0);
+        commandParser.addUsage("-r", "-r <requestsPerSecondPerConnection, 0 for closed loop>");
+        commandParser.addCommand("-m", DefaultMix);
+        commandParser.addUsage("-m", "-m <uri:weight,...>");
+    }
+    public Histogram run() throws InterruptedException {
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+        List<Thread> threads = new ArrayList<>();
+        List<Histogram> histograms = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            Histogram histogram = new Histogram(TimeUnit.SECONDS.toNanos(60), 3);
+            histograms.add(histogram);
+            Thread t = new Thread(() -> drive(histogram, measureFrom, end, new Random()), "load-" + i);
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads)
+            t.join();
+        Histogram total = new Histogram(TimeUnit.SECONDS.toNanos(60), 3);
+        for (Histogram h : histograms)
+            total.add(h);
+        report(total);
+        return total;
+    }
+    private void drive(Histogram histogram, long measureFrom, long end, Random random) {
+        long interval = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+        while (System.nanoTime() < end) {
+            try (Socket socket = new Socket()) {
+                socket.setTcpNoDelay(true);
+                socket.connect(address);
+                OutputStream out = socket.getOutputStream();
+                MessageReader reader = new MessageReader(new BufferedInputStream(socket.getInputStream()));
+                long next = System.nanoTime();
+                while (System.nanoTime() < end) {
+                    if (interval > 0) {
+                        long wait = next - System.nanoTime();
+                        if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                    long sent = System.nanoTime();
+                    out.write(requests[choose(random)]);
+                    HttpMessage res = reader.read();
+                    long latency = System.nanoTime() - sent;
+                    if (res == null) break;
+                    if (!res.getStartLine().startsWith("HTTP/1.1 2")) errors.incrementAndGet();
+                    if (sent >= measureFrom) {
+                        if (interval > 0)
+                            histogram.recordValueWithExpectedInterval(Math.min(latency, histogram.getHighestTrackableValue()), interval);
+                        else
+                            histogram.recordValue(Math.min(latency, histogram.getHighestTrackableValue()));
+                    }
+                    if ("close".equalsIgnoreCase(res.getHeaderFields().get("Connection"))) break;
+                    next += interval;
+                }
+            } catch (Exception e) {
+                errors.incrementAndGet();
+            }
+        }
+    }
+    private int choose(Random random) {
+        int r = random.nextInt(totalWeight);
+        for (int i = 0; i < weights.length; i++) {
+            r -= weights[i];
+            if (r < 0) return i;
+        }
+        return weights.length - 1;
+    }
+    private void report(Histogram h) {
+        printStream.println("connections: " + connections + ", duration: " + seconds + "s, mix: " + String.join(",", mix));
+        printStream.printf("requests/s: %.1f%n", h.getTotalCount() / (double) seconds);
+        printStream.printf("p50: %.3f ms%n", h.getValueAtPercentile(50) / 1e6);
+        printStream.printf("p99: %.3f ms%n", h.getValueAtPercentile(99) / 1e6);
+        printStream.printf("p999: %.3f ms%n", h.getValueAtPercentile(99.9) / 1e6);
+        printStream.printf("max: %.3f ms%n", h.getMaxValue() / 1e6);
+        printStream.println("errors: " + errors.get());
+    }
+    private String[] parseMix(String option) throws BadUsageException {
+        try {
+            String[] entries = option.split(",");
+            requests = new byte[entries.length][];
+            weights = new int[entries.length];
+            String[] uris = new String[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                int colon = entries[i].lastIndexOf(':');
+                uris[i] = entries[i].substring(0, colon);
+                weights[i] = Integer.parseInt(entries[i].substring(colon + 1));
+                totalWeight += weights[i];
+                requests[i] = ("GET /" + uris[i] + " HTTP/1.1\r\nHost: " + address.getHostString() + "\r\n\r\n").getBytes();
+            }
+            if (totalWeight <= 0) throw new IllegalArgumentException(option);
+            return uris;
+        } catch (Exception e) {
+            throw new BadUsageException("-m", commandParser.getUsage("-m"));
+        }
+    }
+    public CommandParser commandParser;
+    private final PrintStream printStream;
+    private final InetSocketAddress address;
+    private final int connections;
+    private final int seconds;
+    private final int warmupSeconds;
+    private final int rate;
+    private final String[] mix;
+    private final AtomicLong errors;
+    private byte[][] requests;
+    private int[] weights;
+    private int totalWeight;
+}
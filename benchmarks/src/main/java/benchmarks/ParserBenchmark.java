@@ -0,0 +1,74 @@
+package benchmarks;
+
+import org.httpserver.BadRequestException;
+import org.httpserver.HttpMessage;
+import org.httpserver.HttpParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import server.BadMessageException;
+import server.MessageReader;
+import server.ParsedMessage;
+import server.RequestParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+    @Param({"small", "large"})
+    public String headers;
+
+    @Setup
+    public void setUp() {
+        StringBuilder request = new StringBuilder("GET /resources/sloane.jpg HTTP/1.1\r\nHost: localhost\r\n");
+        if (headers.equals("large")) {
+            request.append("User-Agent: Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko)\r\n");
+            request.append("Accept: text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,*/*;q=0.8\r\n");
+            request.append("Accept-Language: en-US,en;q=0.5\r\n");
+            request.append("Accept-Encoding: gzip, deflate, br\r\n");
+            request.append("Connection: keep-alive\r\n");
+            request.append("Cookie: session=8f14e45fceea167a5a36dedd4bea2543; theme=dark; seen=1\r\n");
+            for (int i = 0; i < 16; i++)
+                request.append("X-Trace-").append(i).append(": ").append(Integer.toHexString(i * 7919)).append("\r\n");
+        }
+        request.append("Content-Length: 5\r\n\r\nhello");
+        bytes = request.toString().getBytes();
+        headLength = bytes.length - 5;
+    }
+
+    @Benchmark
+    public HttpMessage libraryParseFromStream() throws BadRequestException {
+        HttpMessage message = new HttpMessage();
+        new HttpParser(message).parseFromStream(new ByteArrayInputStream(bytes));
+        return message;
+    }
+
+    @Benchmark
+    public String byteParser() throws BadMessageException {
+        ParsedMessage message = RequestParser.parse(bytes, 0, headLength);
+        return message.header("Content-Length");
+    }
+
+    @Benchmark
+    public HttpMessage messageReader() throws IOException, BadMessageException {
+        return new MessageReader(new ByteArrayInputStream(bytes)).read();
+    }
+
+    private byte[] bytes;
+    private int headLength;
+}
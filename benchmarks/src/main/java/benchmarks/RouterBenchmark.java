@@ -0,0 +1,64 @@
+package benchmarks;
+
+import org.httpserver.BadRequestException;
+import org.httpserver.HttpMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import server.Router;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouterBenchmark {
+    @Param({"4", "64"})
+    public int routes;
+
+    @Setup
+    public void setUp() throws BadRequestException {
+        router = new Router();
+        CompletableFuture<HttpMessage> ok = CompletableFuture.completedFuture(new HttpMessage());
+        for (int i = 0; i < routes; i++) {
+            router.add("GET", "endpoint" + i, (req, params) -> ok);
+            router.add("GET", "api/v" + i + "/users/:id", (req, params) -> ok);
+        }
+        router.add("GET", "*", (req, params) -> ok);
+        exact = request("endpoint" + (routes - 1));
+        param = request("api/v" + (routes - 1) + "/users/42");
+        prefix = request("resources/sloane.jpg");
+    }
+    @Benchmark
+    public Router.Route exact() {
+        return router.route(exact.getURI());
+    }
+    @Benchmark
+    public Router.Route param() {
+        return router.route(param.getURI());
+    }
+    @Benchmark
+    public Router.Route prefix() {
+        return router.route(prefix.getURI());
+    }
+
+    private static HttpMessage request(String uri) throws BadRequestException {
+        return new HttpMessage("GET /" + uri + " HTTP/1.1\r\nHost: localhost\r\n\r\n");
+    }
+    private Router router;
+    private HttpMessage exact;
+    private HttpMessage param;
+    private HttpMessage prefix;
+}
@@ -0,0 +1,59 @@
+package benchmarks;
+
+import org.httpserver.HttpMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import server.MessageWriter;
+import server.PrerenderedMessage;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializerBenchmark {
+    @Setup
+    public void setUp() {
+        String body = "<h1>Welcome</h1><p>This is an http server</p>";
+        message = new HttpMessage();
+        message.setStartLine(HttpMessage.HttpOK);
+        message.putHeader("Content-Length", String.valueOf(body.length()));
+        message.putHeader("Content-Type", "text/html");
+        message.setBody(body);
+        prerendered = new PrerenderedMessage(message);
+    }
+
+    @Benchmark
+    public byte[] getStartLineAndHeaders() {
+        return message.getStartLineAndHeaders().getBytes();
+    }
+
+    @Benchmark
+    public String libraryToString() {
+        return message.toString();
+    }
+
+    @Benchmark
+    public byte[] messageWriterHead() {
+        return MessageWriter.head(message, true);
+    }
+
+    @Benchmark
+    public byte[] prerendered() {
+        return prerendered.head(true);
+    }
+
+    private HttpMessage message;
+    private PrerenderedMessage prerendered;
+}
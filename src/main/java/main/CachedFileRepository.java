@@ -0,0 +1,185 @@
+package main;
+
+import server.PrerenderedMessage;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+public class CachedFileRepository extends FileRepository {
+    public static final long EntryOverhead = 128;
+    public static final int MaxMetadataEntries = 1024;
+
+    public CachedFileRepository(String rootDirectory, long capacityBytes) {
+        this(rootDirectory, capacityBytes, 1000);
+    }
+    public CachedFileRepository(String rootDirectory, long capacityBytes, long revalidateMillis) {
+        super(rootDirectory);
+        this.capacityBytes = capacityBytes;
+        this.maxEntryBytes = capacityBytes / 8;
+        this.revalidateMillis = revalidateMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.metadata = new LinkedHashMap<String,Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,CachedFileRepository.Entry> eldest) {
+                return size() > MaxMetadataEntries;
+            }
+        };
+    }
+    @Override
+    public byte[] fileData(String file) {
+        Entry e = lookup(file);
+        if (e.data != null) return e.data;
+        return super.fileData(file);
+    }
+    @Override
+    public byte[] cachedData(String file) {
+        return lookup(file).data;
+    }
+    @Override
+    public PrerenderedMessage rendered(String file, boolean gzip, Function<byte[],PrerenderedMessage> render) {
+        Entry e = lookup(file);
+        if (e.data == null) return null;
+        PrerenderedMessage res = gzip ? e.gzipped : e.rendered;
+        if (res != null) return res;
+        return keep(file, e, gzip, render.apply(e.data));
+    }
+    @Override
+    public long size(String file) {
+        return lookup(file).size;
+    }
+    @Override
+    public long lastModified(String file) {
+        return lookup(file).modified;
+    }
+    @Override
+    public String contentType(String file) {
+        Entry e = lookup(file);
+        return e.file ? e.contentType : super.contentType(file);
+    }
+    @Override
+    public boolean isDirectory(String path) {
+        return lookup(path).directory;
+    }
+    @Override
+    public boolean isFile(String path) {
+        return lookup(path).file;
+    }
+    public synchronized long cachedBytes() {
+        return cachedBytes;
+    }
+    public synchronized int cachedEntries() {
+        return entries.size();
+    }
+    public synchronized int metadataEntries() {
+        return metadata.size();
+    }
+    private Entry lookup(String file) {
+        Entry e;
+        synchronized (this) {
+            e = entries.get(file);
+            if (e == null) e = metadata.get(file);
+        }
+        long now = System.currentTimeMillis();
+        FileIndex.Node node = indexed(file);
+        if (e != null && node == null && now - e.checkedAt < revalidateMillis)
+            return e;
+        BasicFileAttributes attributes = node != null ? node.attributes() : attributes(getPath(file));
+        if (e != null && e.matches(attributes)) {
+            e.checkedAt = now;
+            return e;
+        }
+        Entry fresh = load(file, attributes, now);
+        store(file, fresh);
+        return fresh;
+    }
+    private Entry load(String file, BasicFileAttributes attributes, long now) {
+        if (attributes == null)
+            return new Entry(false, false, 0, 0, null, null, now);
+        if (!attributes.isRegularFile())
+            return new Entry(attributes.isDirectory(), false, attributes.size(), attributes.lastModifiedTime().toMillis(),
+                    null, null, now);
+        byte[] data = attributes.size() <= maxEntryBytes ? super.fileData(file) : null;
+        if (data != null && data.length != attributes.size()) data = null;
+        return new Entry(false, true, attributes.size(), attributes.lastModifiedTime().toMillis(),
+                data, super.contentType(file), now);
+    }
+    private synchronized void store(String file, Entry e) {
+        Entry old = entries.remove(file);
+        if (old != null) cachedBytes -= old.weight();
+        metadata.remove(file);
+        if (e.data == null) {
+            if (e.directory || e.file)
+                metadata.put(file, e);
+            return;
+        }
+        entries.put(file, e);
+        cachedBytes += e.weight();
+        evict();
+    }
+    private synchronized PrerenderedMessage keep(String file, Entry e, boolean gzip, PrerenderedMessage res) {
+        PrerenderedMessage raced = gzip ? e.gzipped : e.rendered;
+        if (raced != null) return raced;
+        if (entries.get(file) != e) return res;
+        long weight = res.length(true) - (res.body() == e.data ? e.data.length : 0);
+        if (gzip) e.gzipped = res;
+        else e.rendered = res;
+        e.renderedBytes += weight;
+        cachedBytes += weight;
+        evict();
+        return res;
+    }
+    private void evict() {
+        Iterator<Map.Entry<String,Entry>> eldest = entries.entrySet().iterator();
+        while (cachedBytes > capacityBytes && eldest.hasNext()) {
+            cachedBytes -= eldest.next().getValue().weight();
+            eldest.remove();
+        }
+    }
+    private static BasicFileAttributes attributes(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (Exception e) {return null;}
+    }
+    private static class Entry {
+        Entry(boolean directory, boolean file, long size, long modified, byte[] data, String contentType, long checkedAt) {
+            this.directory = directory;
+            this.file = file;
+            this.size = size;
+            this.modified = modified;
+            this.data = data;
+            this.contentType = contentType;
+            this.checkedAt = checkedAt;
+        }
+        boolean matches(BasicFileAttributes attributes) {
+            if (attributes == null) return !directory && !file;
+            return attributes.isDirectory() == directory
+                    && attributes.isRegularFile() == file
+                    && attributes.size() == size
+                    && attributes.lastModifiedTime().toMillis() == modified;
+        }
+        long weight() {
+            return EntryOverhead + (data == null ? 0 : data.length) + renderedBytes;
+        }
+        final boolean directory;
+        final boolean file;
+        final long size;
+        final long modified;
+        final byte[] data;
+        final String contentType;
+        volatile long checkedAt;
+        volatile PrerenderedMessage rendered;
+        volatile PrerenderedMessage gzipped;
+        long renderedBytes;
+    }
+    private final long capacityBytes;
+    private final long maxEntryBytes;
+    private final long revalidateMillis;
+    private final LinkedHashMap<String,Entry> entries;
+    private final LinkedHashMap<String,Entry> metadata;
+    private long cachedBytes;
+}
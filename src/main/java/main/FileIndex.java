@@ -0,0 +1,192 @@
+package main;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class FileIndex implements Closeable {
+    public static class Node {
+        Node(BasicFileAttributes attributes, Map<String,Node> children) {
+            this.attributes = attributes;
+            this.children = children;
+        }
+        public BasicFileAttributes attributes() {
+            return attributes;
+        }
+        public boolean exists() {
+            return attributes != null;
+        }
+        public boolean isDirectory() {
+            return attributes != null && attributes.isDirectory();
+        }
+        public boolean isFile() {
+            return attributes != null && attributes.isRegularFile();
+        }
+        public long size() {
+            return attributes == null ? 0 : attributes.size();
+        }
+        public long modified() {
+            return attributes == null ? 0 : attributes.lastModifiedTime().toMillis();
+        }
+        public Map<String,Node> children() {
+            return children == null ? Collections.emptyMap() : children;
+        }
+        private final BasicFileAttributes attributes;
+        private volatile Map<String,Node> children;
+    }
+    public static final Node Missing = new Node(null, Collections.emptyMap());
+
+    public FileIndex(Path root) {
+        this(root, null);
+    }
+    private FileIndex(Path root, WatchService watcher) {
+        this.root = root.toAbsolutePath().normalize();
+        this.keys = new ConcurrentHashMap<>();
+        this.version = new AtomicLong();
+        this.watcher = watcher;
+        this.tree = scan(this.root);
+    }
+    public static FileIndex watching(Path root) throws IOException {
+        FileIndex index = new FileIndex(root, root.getFileSystem().newWatchService());
+        index.start();
+        return index;
+    }
+    public synchronized void watch() throws IOException {
+        if (watcher != null) return;
+        watcher = root.getFileSystem().newWatchService();
+        rescan();
+        start();
+    }
+    public Node lookup(String path) {
+        Node node = tree;
+        int from = 0;
+        while (from <= path.length()) {
+            int end = path.indexOf('/', from);
+            if (end == -1) end = path.length();
+            if (end > from) {
+                String segment = path.substring(from, end);
+                if (segment.equals(".."))
+                    return Missing;
+                if (!segment.equals(".")) {
+                    if (node.children == null)
+                        return null;
+                    node = node.children.get(segment);
+                    if (node == null) return Missing;
+                }
+            }
+            from = end + 1;
+        }
+        return node;
+    }
+    public long version() {
+        return version.get();
+    }
+    public void rescan() {
+        tree = scan(root);
+        version.incrementAndGet();
+    }
+    @Override
+    public synchronized void close() throws IOException {
+        if (watcher == null) return;
+        watcher.close();
+        thread.interrupt();
+    }
+
+    private void processEvents() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                Path directory = keys.get(key);
+                boolean overflowed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null)
+                        overflowed = true;
+                    else
+                        changed(directory.resolve((Path) event.context()));
+                }
+                if (!key.reset())
+                    keys.remove(key);
+                if (overflowed)
+                    rescan();
+                else
+                    version.incrementAndGet();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {}
+    }
+    private void changed(Path path) {
+        Node parent = lookup(relative(path.getParent()));
+        if (parent == null || parent.children == null || !parent.isDirectory()) return;
+        Map<String,Node> children = new LinkedHashMap<>(parent.children);
+        String name = path.getFileName().toString();
+        BasicFileAttributes attributes = attributes(path);
+        if (attributes == null)
+            children.remove(name);
+        else if (attributes.isDirectory()) {
+            Node old = children.get(name);
+            if (old != null && old.isDirectory() && old.children != null)
+                children.put(name, new Node(attributes, old.children));
+            else
+                children.put(name, scan(path));
+        } else
+            children.put(name, new Node(attributes, Collections.emptyMap()));
+        parent.children = Collections.unmodifiableMap(children);
+    }
+    private synchronized void start() {
+        thread = new Thread(this::processEvents, "file-index");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    private void register(Path directory) {
+        if (watcher == null) return;
+        try {
+            keys.put(directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), directory);
+        } catch (IOException | ClosedWatchServiceException ignored) {}
+    }
+    private String relative(Path path) {
+        return root.relativize(path).toString().replace('\\', '/');
+    }
+    private Node scan(Path path) {
+        BasicFileAttributes attributes = attributes(path);
+        if (attributes == null)
+            return Missing;
+        if (!attributes.isDirectory())
+            return new Node(attributes, Collections.emptyMap());
+        if (Files.isSymbolicLink(path))
+            return new Node(attributes, null);
+        register(path);
+        Map<String,Node> children = new LinkedHashMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+            for (Path child : stream) {
+                Node node = scan(child);
+                if (node.exists())
+                    children.put(child.getFileName().toString(), node);
+            }
+        } catch (IOException ignored) {}
+        return new Node(attributes, Collections.unmodifiableMap(children));
+    }
+    private static BasicFileAttributes attributes(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (Exception e) {return null;}
+    }
+    private final Path root;
+    private final Map<WatchKey,Path> keys;
+    private final AtomicLong version;
+    private volatile Node tree;
+    private WatchService watcher;
+    private Thread thread;
+}
@@ -1,36 +1,96 @@
 package main;
 
+import server.PrerenderedMessage;
+
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.function.Function;
 
 public class FileRepository {
     public FileRepository(String rootDirectory) {
         root = FileSystems.getDefault().getPath(rootDirectory);
+        base = root.toAbsolutePath().normalize();
+    }
+    public void setIndex(FileIndex index) {
+        this.index = index;
+    }
+    public FileIndex getIndex() {
+        return index;
     }
     public String[] fileNames(String directory) {
-        Path path = root.resolve(directory);
+        Path path = getPath(directory);
+        FileIndex.Node node = indexed(directory);
+        if (node != null)
+            return node.children().keySet().stream().map((name)->path.resolve(name).toString()).toArray(String[]::new);
         try {
             return Files.list(path).map(Path::toString).toArray(String[]::new);
         } catch (Exception e) {return new String[0];}
     }
 
     public byte[] fileData(String file) {
-        Path path = root.resolve(file);
+        Path path = getPath(file);
         try {
             return Files.readAllBytes(path);
         } catch (Exception e) {return new byte[0];}
     }
+    public long size(String file) {
+        FileIndex.Node node = indexed(file);
+        if (node != null)
+            return node.size();
+        Path path = getPath(file);
+        try {
+            return Files.size(path);
+        } catch (Exception e) {return 0;}
+    }
+    public long lastModified(String file) {
+        FileIndex.Node node = indexed(file);
+        if (node != null)
+            return node.modified();
+        Path path = getPath(file);
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (Exception e) {return 0;}
+    }
     public boolean isDirectory(String path) {
-        Path newPath = root.resolve(path);
-        return Files.isDirectory(newPath);
+        FileIndex.Node node = indexed(path);
+        if (node != null)
+            return node.isDirectory();
+        Path newPath = getPath(path);
+        return newPath != null && Files.isDirectory(newPath);
     }
     public boolean isFile(String path) {
-        Path newPath = root.resolve(path);
-        return Files.isRegularFile(newPath);
+        FileIndex.Node node = indexed(path);
+        if (node != null)
+            return node.isFile();
+        Path newPath = getPath(path);
+        return newPath != null && Files.isRegularFile(newPath);
+    }
+    public String contentType(String file) {
+        try {
+            return Files.probeContentType(getPath(file));
+        } catch (Exception e) {return null;}
+    }
+    public byte[] cachedData(String file) {
+        return null;
+    }
+    public MappedFile mappedData(String file) {
+        return null;
+    }
+    public PrerenderedMessage rendered(String file, boolean gzip, Function<byte[],PrerenderedMessage> render) {
+        return null;
     }
     public Path getPath(String path) {
-        return root.resolve(path);
+        int from = 0;
+        while (from < path.length() && path.charAt(from) == '/')
+            from++;
+        Path resolved = root.resolve(path.substring(from));
+        return resolved.toAbsolutePath().normalize().startsWith(base) ? resolved : null;
+    }
+    public FileIndex.Node indexed(String path) {
+        return index == null ? null : index.lookup(path);
     }
     private Path root;
+    private Path base;
+    private volatile FileIndex index;
 }
@@ -6,6 +6,8 @@ import java.io.IOException;
 
 public class Main {
     public static void main(String[] args) throws IOException, BadUsageException {
-        new ServerApplication(args,System.out).run();
+        ServerApplication application = new ServerApplication(args,System.out);
+        Runtime.getRuntime().addShutdownHook(new Thread(application::drain, "drain"));
+        application.run();
     }
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+package main;
+
+import server.PrerenderedMessage;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MappedFile {
+    MappedFile(MappedByteBuffer buffer, long size, long modified) {
+        this.buffer = buffer;
+        this.size = size;
+        this.modified = modified;
+        this.references = new AtomicInteger(1);
+    }
+    public ByteBuffer buffer() {
+        return buffer.duplicate();
+    }
+    public long size() {
+        return size;
+    }
+    public long modified() {
+        return modified;
+    }
+    public boolean retain() {
+        int n;
+        do {
+            n = references.get();
+            if (n == 0) return false;
+        } while (!references.compareAndSet(n, n + 1));
+        return true;
+    }
+    public void release() {
+        if (references.decrementAndGet() == 0)
+            unmap(buffer);
+    }
+    public int references() {
+        return references.get();
+    }
+    public boolean isUnmapped() {
+        return references.get() == 0;
+    }
+    PrerenderedMessage gzipped() {
+        return gzipped;
+    }
+    void gzipped(PrerenderedMessage gzipped) {
+        this.gzipped = gzipped;
+    }
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (NoSuchMethodException e) {
+            try {
+                Method cleaner = buffer.getClass().getMethod("cleaner");
+                cleaner.setAccessible(true);
+                Object c = cleaner.invoke(buffer);
+                if (c != null) c.getClass().getMethod("clean").invoke(c);
+            } catch (Exception ignored) {}
+        } catch (Exception ignored) {}
+    }
+    private final MappedByteBuffer buffer;
+    private final long size;
+    private final long modified;
+    private final AtomicInteger references;
+    private volatile PrerenderedMessage gzipped;
+}
@@ -0,0 +1,150 @@
+package main;
+
+import server.Compression;
+import server.PrerenderedMessage;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+public class MappedFileRepository extends FileRepository implements Closeable {
+    public static final int MaxMappings = 1024;
+
+    public MappedFileRepository(String rootDirectory, long capacityBytes) {
+        this(rootDirectory, capacityBytes, MaxMappings);
+    }
+    public MappedFileRepository(String rootDirectory, long capacityBytes, int maxMappings) {
+        super(rootDirectory);
+        this.capacityBytes = capacityBytes;
+        this.maxEntryBytes = Math.min(Integer.MAX_VALUE, capacityBytes / 8);
+        this.maxMappings = maxMappings;
+        this.mappings = new LinkedHashMap<>(16, 0.75f, true);
+        this.contentTypes = new LinkedHashMap<String,String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,String> eldest) {
+                return size() > MaxMappings;
+            }
+        };
+    }
+    @Override
+    public byte[] fileData(String file) {
+        MappedFile mapped = mappedData(file);
+        if (mapped == null) return super.fileData(file);
+        try {
+            return bytes(mapped);
+        } finally {
+            mapped.release();
+        }
+    }
+    @Override
+    public MappedFile mappedData(String file) {
+        FileIndex.Node node = indexed(file);
+        BasicFileAttributes attributes = node != null ? node.attributes() : attributes(getPath(file));
+        if (attributes == null || !attributes.isRegularFile() || attributes.size() == 0 || attributes.size() > maxEntryBytes)
+            return null;
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+        synchronized (this) {
+            MappedFile mapped = mappings.get(file);
+            if (mapped != null && mapped.size() == size && mapped.modified() == modified && mapped.retain())
+                return mapped;
+        }
+        MappedFile fresh = map(getPath(file), size, modified);
+        if (fresh == null) return null;
+        fresh.retain();
+        store(file, fresh);
+        return fresh;
+    }
+    @Override
+    public PrerenderedMessage rendered(String file, boolean gzip, Function<byte[],PrerenderedMessage> render) {
+        if (!gzip) return null;
+        MappedFile mapped = mappedData(file);
+        if (mapped == null) return null;
+        if (!Compression.worthCompressing(contentType(file), mapped.size())) {
+            mapped.release();
+            return null;
+        }
+        try {
+            PrerenderedMessage res = mapped.gzipped();
+            if (res == null) {
+                res = render.apply(bytes(mapped));
+                mapped.gzipped(res);
+            }
+            return res;
+        } finally {
+            mapped.release();
+        }
+    }
+    @Override
+    public String contentType(String file) {
+        synchronized (this) {
+            if (contentTypes.containsKey(file)) return contentTypes.get(file);
+        }
+        String contentType = super.contentType(file);
+        synchronized (this) {
+            contentTypes.put(file, contentType);
+        }
+        return contentType;
+    }
+    public synchronized long mappedBytes() {
+        return mappedBytes;
+    }
+    public synchronized int mappedFiles() {
+        return mappings.size();
+    }
+    @Override
+    public synchronized void close() {
+        for (MappedFile mapped : mappings.values())
+            mapped.release();
+        mappings.clear();
+        mappedBytes = 0;
+    }
+    private synchronized void store(String file, MappedFile mapped) {
+        MappedFile old = mappings.put(file, mapped);
+        if (old != null) {
+            mappedBytes -= old.size();
+            old.release();
+        }
+        mappedBytes += mapped.size();
+        Iterator<Map.Entry<String,MappedFile>> eldest = mappings.entrySet().iterator();
+        while ((mappedBytes > capacityBytes || mappings.size() > maxMappings) && eldest.hasNext()) {
+            MappedFile evicted = eldest.next().getValue();
+            eldest.remove();
+            mappedBytes -= evicted.size();
+            evicted.release();
+        }
+    }
+    private static byte[] bytes(MappedFile mapped) {
+        ByteBuffer buffer = mapped.buffer();
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+    private static MappedFile map(Path path, long size, long modified) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() != size) return null;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new MappedFile(buffer, size, modified);
+        } catch (Exception e) {return null;}
+    }
+    private static BasicFileAttributes attributes(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (Exception e) {return null;}
+    }
+    private final long capacityBytes;
+    private final long maxEntryBytes;
+    private final int maxMappings;
+    private final LinkedHashMap<String,MappedFile> mappings;
+    private final LinkedHashMap<String,String> contentTypes;
+    private long mappedBytes;
+}
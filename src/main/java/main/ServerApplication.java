@@ -4,18 +4,49 @@ import commandparser.BadUsageException;
 import commandparser.CommandParser;
 import org.httpserver.HttpMessage;
 import org.httpserver.HttpServer;
+import server.AbstractServer;
+import server.AccessLog;
+import server.Admission;
+import server.BlockingServer;
+import server.BufferMessage;
+import server.Compression;
+import server.Conditionals;
+import server.ConnectionExecutors;
+import server.FileMessage;
+import server.Headers;
+import server.Metrics;
+import server.NioServer;
+import server.PrerenderedMessage;
+import server.Ranges;
+import server.Router;
+import server.StreamingMessage;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.io.Writer;
 import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Random;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
 
 
 public class ServerApplication {
@@ -29,30 +60,45 @@ public class ServerApplication {
         port = commandParser.getInt("-p");
         rootDirectory = commandParser.getString("-r");
         hostname = commandParser.getString("-h");
-        repository = new FileRepository(rootDirectory);
-        server = new HttpServer(new InetSocketAddress(hostname,port));
+        repository = repository(rootDirectory,commandParser.getInt("-c"),commandParser.getString("-m"));
+        cacheControl = cacheControl(commandParser.getInt("-a"));
+        server = engine(commandParser.getString("-e"),new InetSocketAddress(hostname,port));
+        server.setConnectionExecutor(connectionExecutor(commandParser.getString("-x")));
+        server.setKeepAlive(commandParser.getInt("-u"),commandParser.getInt("-k"));
+        server.setTimeouts(commandParser.getInt("-t"),commandParser.getInt("-d"),commandParser.getInt("-w"));
+        server.setSocketOptions(tcpNoDelay(commandParser.getString("-n")),commandParser.getInt("-s"));
+        server.setAccessLog(accessLog(commandParser.getString("-l"),commandParser.getString("-o"),commandParser.getInt("-f")));
+        server.setAdmission(admission(commandParser.getInt("-q"),commandParser.getInt("-i"),commandParser.getInt("-y")));
+        server.setAcceptBacklog(commandParser.getInt("-b"));
+        drainTimeoutMillis = commandParser.getInt("-g");
         server.setPrintStream(printStream);
         server.initialize();
+        FileIndex index = FileIndex.watching(repository.getPath(""));
+        repository.setIndex(index);
+        server.closeOnStop(index);
+        if (repository instanceof Closeable)
+            server.closeOnStop((Closeable) repository);
+        if (server.getAccessLog() != null)
+            server.closeOnStop(server.getAccessLog());
         random = new Random();
+        renderedListings = Collections.synchronizedMap(new WeakHashMap<>());
+        router = new Router();
+        router.setMetrics(server.getMetrics());
+        addRoutes();
     }
     public void run() {
-        server.onConnection((req)-> {
-            String uri = req.getURI();
-            HttpMessage res = new HttpMessage();
-            if (uri.equals("hello"))
-                buildWelcomeScreen(res);
-            else if (uri.equals("ping"))
-                buildPing(res);
-            else if (uri.equals("guess"))
-                buildGuess(res, req);
-            else if (repository.isDirectory(uri))
-                buildDirectory(res,uri);
-            else if (repository.isFile(uri))
-                buildFile(res,uri);
-            return res;
-        });
+        server.onConnectionAsync(this::respondAsync);
         server.run();
     }
+    public boolean drain() {
+        return server.drain(drainTimeoutMillis);
+    }
+    public CompletableFuture<HttpMessage> respondAsync(HttpMessage req) {
+        return router.apply(req);
+    }
+    public HttpMessage respond(HttpMessage req) {
+        return router.apply(req).join();
+    }
     public void addCommands() {
         commandParser.addCommand("-p",80);
         commandParser.addUsage("-p","-p <port>");
@@ -60,6 +106,62 @@ public class ServerApplication {
         commandParser.addUsage("-r","-r <rootDirectory>");
         commandParser.addCommand("-h","127.0.0.1");
         commandParser.addUsage("-h","-h <hostname>");
+        commandParser.addCommand("-x","threads");
+        commandParser.addUsage("-x","-x <threads|pool:N|virtual>");
+        commandParser.addCommand("-k",100);
+        commandParser.addUsage("-k","-k <maxRequestsPerConnection>");
+        commandParser.addCommand("-e","blocking");
+        commandParser.addUsage("-e","-e <nio|blocking>");
+        commandParser.addCommand("-c",32);
+        commandParser.addUsage("-c","-c <cacheMegabytes>");
+        commandParser.addCommand("-a",0);
+        commandParser.addUsage("-a","-a <cacheMaxAgeSeconds>");
+        commandParser.addCommand("-m","read");
+        commandParser.addUsage("-m","-m <read|mmap>");
+        commandParser.addCommand("-n","on");
+        commandParser.addUsage("-n","-n <on|off>");
+        commandParser.addCommand("-s",0);
+        commandParser.addUsage("-s","-s <sendBufferBytes>");
+        commandParser.addCommand("-l","");
+        commandParser.addUsage("-l","-l <accessLogFile>");
+        commandParser.addCommand("-o","drop");
+        commandParser.addUsage("-o","-o <drop|block>");
+        commandParser.addCommand("-f",1000);
+        commandParser.addUsage("-f","-f <accessLogFlushMillis>");
+        commandParser.addCommand("-q",0);
+        commandParser.addUsage("-q","-q <maxConnections>");
+        commandParser.addCommand("-i",0);
+        commandParser.addUsage("-i","-i <maxConnectionsPerClient>");
+        commandParser.addCommand("-b",50);
+        commandParser.addUsage("-b","-b <acceptBacklog>");
+        commandParser.addCommand("-y",1);
+        commandParser.addUsage("-y","-y <retryAfterSeconds>");
+        commandParser.addCommand("-u",5000);
+        commandParser.addUsage("-u","-u <idleTimeoutMillis>");
+        commandParser.addCommand("-t",10000);
+        commandParser.addUsage("-t","-t <headerTimeoutMillis>");
+        commandParser.addCommand("-d",30000);
+        commandParser.addUsage("-d","-d <bodyTimeoutMillis>");
+        commandParser.addCommand("-w",30000);
+        commandParser.addUsage("-w","-w <writeTimeoutMillis>");
+        commandParser.addCommand("-g",30000);
+        commandParser.addUsage("-g","-g <drainTimeoutMillis>");
+    }
+    public void addRoutes() {
+        HttpMessage welcome = new HttpMessage();
+        buildWelcomeScreen(welcome);
+        router.add("GET","hello",welcome);
+        router.add("GET","ping",(req,params)->buildPing());
+        router.add("GET","metrics",(req,params)->completed(buildMetrics()));
+        router.add("GET","guess",(req,params)->completed(buildGuess(req)));
+        router.add("POST","guess",(req,params)->completed(buildGuess(req)));
+        router.add("GET","*",(req,params)->completed(buildStatic(params.get("*"),req)));
+    }
+    public void prerender(String uri, HttpMessage res) {
+        router.add("GET",uri,res);
+    }
+    public Router getRouter() {
+        return router;
     }
     public HttpServer getServer() {
         return server;
@@ -74,6 +176,71 @@ public class ServerApplication {
         this.random = random;
     }
 
+    private static CompletableFuture<HttpMessage> completed(HttpMessage res) {
+        return CompletableFuture.completedFuture(res);
+    }
+    private static PrerenderedMessage prerendered(HttpMessage res) {
+        return res instanceof PrerenderedMessage ? (PrerenderedMessage) res : new PrerenderedMessage(res);
+    }
+    private static String cacheControl(int maxAgeSeconds) {
+        if (maxAgeSeconds <= 0)
+            return "no-cache";
+        return "public, max-age=" + maxAgeSeconds;
+    }
+    private FileRepository repository(String rootDirectory, int cacheMegabytes, String mode) throws BadUsageException {
+        if (!mode.equals("read") && !mode.equals("mmap"))
+            throw new BadUsageException("-m",commandParser.getUsage("-m"));
+        if (cacheMegabytes <= 0)
+            return new FileRepository(rootDirectory);
+        if (mode.equals("mmap"))
+            return new MappedFileRepository(rootDirectory,cacheMegabytes * 1024L * 1024L);
+        return new CachedFileRepository(rootDirectory,cacheMegabytes * 1024L * 1024L);
+    }
+    private AbstractServer engine(String option, InetSocketAddress address) throws IOException, BadUsageException {
+        if (option.equals("blocking"))
+            return new BlockingServer(address);
+        if (option.equals("nio"))
+            return new NioServer(address);
+        throw new BadUsageException("-e",commandParser.getUsage("-e"));
+    }
+    private AccessLog accessLog(String file, String overflow, int flushMillis) throws IOException, BadUsageException {
+        AccessLog.Overflow policy;
+        if (overflow.equals("drop"))
+            policy = AccessLog.Overflow.Drop;
+        else if (overflow.equals("block"))
+            policy = AccessLog.Overflow.Block;
+        else
+            throw new BadUsageException("-o",commandParser.getUsage("-o"));
+        if (flushMillis <= 0)
+            throw new BadUsageException("-f",commandParser.getUsage("-f"));
+        if (file.isEmpty())
+            return null;
+        return new AccessLog(Paths.get(file),policy,flushMillis);
+    }
+    private Admission admission(int maxConnections, int maxConnectionsPerClient, int retryAfterSeconds) throws BadUsageException {
+        if (maxConnections < 0)
+            throw new BadUsageException("-q",commandParser.getUsage("-q"));
+        if (maxConnectionsPerClient < 0)
+            throw new BadUsageException("-i",commandParser.getUsage("-i"));
+        if (retryAfterSeconds < 0)
+            throw new BadUsageException("-y",commandParser.getUsage("-y"));
+        return new Admission(maxConnections,maxConnectionsPerClient,retryAfterSeconds);
+    }
+    private boolean tcpNoDelay(String option) throws BadUsageException {
+        if (option.equals("on"))
+            return true;
+        if (option.equals("off"))
+            return false;
+        throw new BadUsageException("-n",commandParser.getUsage("-n"));
+    }
+    private Executor connectionExecutor(String option) throws BadUsageException {
+        try {
+            return ConnectionExecutors.fromOption(option);
+        } catch (Exception e) {
+            throw new BadUsageException("-x",commandParser.getUsage("-x"));
+        }
+    }
+
     private void buildWelcomeScreen(HttpMessage res) {
         String body = "<h1>Welcome</h1><p>This is an http server</p>";
         res.setStartLine(HttpMessage.HttpOK);
@@ -81,43 +248,168 @@ public class ServerApplication {
         res.putHeader("Content-Type","text/html");
         res.setBody(body);
     }
-    private void buildPing(HttpMessage res) {
-        try {
-            Thread.sleep(1000);
-        } catch (Exception ignored) {}
-        String body = formatInstant(Instant.now());
+    private CompletableFuture<HttpMessage> buildPing() {
+        CompletableFuture<HttpMessage> future = new CompletableFuture<>();
+        timer.schedule(()-> {
+            HttpMessage res = new HttpMessage();
+            String body = formatInstant(Instant.now());
+            res.setStartLine(HttpMessage.HttpOK);
+            res.putHeader("Content-Length", String.valueOf(body.length()));
+            res.putHeader("Content-Type","text/html");
+            res.setBody(body);
+            future.complete(res);
+        },1,TimeUnit.SECONDS);
+        return future;
+    }
+    private HttpMessage buildMetrics() {
+        byte[] body = server.getMetrics().render().getBytes(StandardCharsets.UTF_8);
+        HttpMessage res = new HttpMessage();
         res.setStartLine(HttpMessage.HttpOK);
-        res.putHeader("Content-Length", String.valueOf(body.length()));
-        res.putHeader("Content-Type","text/html");
+        res.putHeader("Content-Length", String.valueOf(body.length));
+        res.putHeader("Content-Type", Metrics.ContentType);
+        res.putHeader("Cache-Control", "no-store");
         res.setBody(body);
+        return res;
     }
-    private void buildDirectory(HttpMessage res, String uri) {
-        String[] files = repository.fileNames(uri);
-        if (Arrays.stream(files).anyMatch(s->s.endsWith("index.html"))) {
-            buildFile(res,uri+"/index.html");
-            return;
-        }
-        String body = "";
-        for (String file: files) {
-            file = file.substring(rootDirectory.length());
-            body += "<a href=\"" + file + "\">" + file + "</a>" + "<br>";
+    private HttpMessage buildStatic(String uri, HttpMessage req) {
+        HttpMessage res;
+        String range = Headers.get(req,"Range");
+        boolean gzip = range == null && Compression.acceptsGzip(req);
+        if (repository.isDirectory(uri))
+            res = buildDirectory(uri,gzip);
+        else if (repository.isFile(uri))
+            res = buildFile(uri,gzip);
+        else
+            return router.notFound();
+        if (Conditionals.notModified(req,res))
+            return replaced(res,Conditionals.notModifiedResponse(res));
+        if (range != null && Headers.has(res,"Accept-Ranges") && Ranges.ifRangeMatches(req,res))
+            return replaced(res,buildRange(uri,range,res));
+        return res;
+    }
+    private static HttpMessage replaced(HttpMessage res, HttpMessage replacement) {
+        if (replacement != res && res instanceof BufferMessage)
+            ((BufferMessage) res).release();
+        return replacement;
+    }
+    private HttpMessage buildRange(String uri, String range, HttpMessage res) {
+        long size = Long.parseLong(Headers.get(res,"Content-Length"));
+        List<long[]> ranges = Ranges.parse(range,size);
+        if (ranges == null)
+            return res;
+        if (ranges.isEmpty())
+            return Ranges.unsatisfiable(res,size);
+        if (res instanceof FileMessage)
+            return Ranges.partial((FileMessage) res,ranges);
+        if (res instanceof BufferMessage)
+            return Ranges.partial(res,ranges,((BufferMessage) res).buffer());
+        byte[] data = repository.cachedData(uri);
+        if (data == null || data.length != size)
+            return res;
+        return Ranges.partial(res,ranges,data);
+    }
+    private HttpMessage buildDirectory(String uri, boolean gzip) {
+        String index = uri.isEmpty() ? "index.html" : uri + "/index.html";
+        if (repository.isFile(index))
+            return buildFile(index,gzip);
+        FileIndex.Node node = repository.indexed(uri);
+        if (node == null || node.children().size() > StreamedListingEntries)
+            return streamListing(uri,gzip);
+        Listing listing = renderedListings.get(node);
+        if (listing == null || listing.children != node.children()) {
+            HttpMessage res = buildListing(uri);
+            listing = new Listing(node.children(),new PrerenderedMessage(res),prerendered(Compression.gzipped(res)));
+            renderedListings.put(node,listing);
         }
+        return gzip ? listing.gzipped : listing.res;
+    }
+    private HttpMessage buildListing(String uri) {
+        StringBuilder body = new StringBuilder();
+        for (String file: repository.fileNames(uri))
+            appendListingEntry(body,file);
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        HttpMessage res = new HttpMessage();
         res.setStartLine(HttpMessage.HttpOK);
-        res.putHeader("Content-Length", String.valueOf(body.length()));
-        res.putHeader("Content-Type","text/html");
-        res.setBody(body);
+        res.putHeader("Content-Length", String.valueOf(bytes.length));
+        res.putHeader("Content-Type","text/html; charset=utf-8");
+        if (Compression.worthCompressing("text/html",bytes.length))
+            res.putHeader("Vary","Accept-Encoding");
+        res.setBody(bytes);
+        return res;
+    }
+    private HttpMessage streamListing(String uri, boolean gzip) {
+        StreamingMessage res = new StreamingMessage((out)-> {
+            GZIPOutputStream compressed = gzip ? new GZIPOutputStream(out,8192) : null;
+            Writer writer = new OutputStreamWriter(gzip ? compressed : out,StandardCharsets.UTF_8);
+            StringBuilder entry = new StringBuilder();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(repository.getPath(uri))) {
+                for (Path file : files) {
+                    entry.setLength(0);
+                    appendListingEntry(entry,file.toString());
+                    writer.append(entry);
+                }
+            }
+            writer.flush();
+            if (gzip)
+                compressed.finish();
+        });
+        res.setStartLine(HttpMessage.HttpOK);
+        res.putHeader("Content-Type","text/html; charset=utf-8");
+        res.putHeader("Vary","Accept-Encoding");
+        if (gzip)
+            res.putHeader("Content-Encoding","gzip");
+        return res;
     }
-    private void buildFile(HttpMessage res, String uri) {
-        Path p = repository.getPath(uri);
-        byte[] body = repository.fileData(uri);
+    private void appendListingEntry(StringBuilder body, String file) {
+        file = file.substring(rootDirectory.length());
+        body.append("<a href=\"").append(file).append("\">").append(file).append("</a>").append("<br>");
+    }
+    private HttpMessage buildFile(String uri, boolean gzip) {
+        HttpMessage rendered = repository.rendered(uri,gzip,(data)->gzip
+                ? prerendered(Compression.gzipped(buildCachedFile(uri,data)))
+                : new PrerenderedMessage(buildCachedFile(uri,data)));
+        if (rendered != null)
+            return rendered;
+        MappedFile mapped = repository.mappedData(uri);
+        if (mapped != null)
+            return buildMappedFile(uri,mapped);
+        FileMessage res = new FileMessage(repository.getPath(uri),0,repository.size(uri));
         res.setStartLine(HttpMessage.HttpOK);
-        res.putHeader("Content-Length", String.valueOf(body.length));
-        try {
-            res.putHeader("Content-Type", Files.probeContentType(p));
-        } catch (IOException ignored) {}
-        res.setBody(body);
+        res.putHeader("Content-Length", String.valueOf(res.getCount()));
+        res.putHeader("Content-Type", repository.contentType(uri));
+        putFileHeaders(res,uri,res.getCount());
+        return res;
     }
-    private void buildGuess(HttpMessage res, HttpMessage req) {
+    private HttpMessage buildMappedFile(String uri, MappedFile mapped) {
+        BufferMessage res = new BufferMessage(mapped.buffer(),mapped::release);
+        res.setStartLine(HttpMessage.HttpOK);
+        res.putHeader("Content-Length", String.valueOf(mapped.size()));
+        res.putHeader("Content-Type", repository.contentType(uri));
+        if (Compression.worthCompressing(repository.contentType(uri),mapped.size()))
+            res.putHeader("Vary","Accept-Encoding");
+        putFileHeaders(res,uri,mapped.size());
+        return res;
+    }
+    private HttpMessage buildCachedFile(String uri, byte[] data) {
+        HttpMessage res = new HttpMessage();
+        res.setStartLine(HttpMessage.HttpOK);
+        res.putHeader("Content-Length", String.valueOf(data.length));
+        res.putHeader("Content-Type", repository.contentType(uri));
+        if (Compression.worthCompressing(repository.contentType(uri),data.length))
+            res.putHeader("Vary","Accept-Encoding");
+        putFileHeaders(res,uri,data.length);
+        res.setBody(data);
+        return res;
+    }
+    private void putFileHeaders(HttpMessage res, String uri, long size) {
+        long modified = repository.lastModified(uri);
+        res.putHeader("Accept-Ranges", "bytes");
+        res.putHeader("ETag", Conditionals.etag(size,modified));
+        res.putHeader("Last-Modified", Conditionals.httpDate(modified));
+        res.putHeader("Cache-Control", cacheControl);
+    }
+    private HttpMessage buildGuess(HttpMessage req) {
+        HttpMessage res = new HttpMessage();
         String method = req.getMethod();
         String body = "";
         if (method.equals("GET"))
@@ -140,6 +432,7 @@ public class ServerApplication {
         res.putHeader("Content-Length", String.valueOf(body.length()));
         res.putHeader("Content-Type","text/html");
         res.setBody(body);
+        return res;
     }
     private String guessBody(int answer, int tries) {
         return "<form action=\"/guess\" method=\"post\">" +
@@ -162,12 +455,32 @@ public class ServerApplication {
         if (k == -1) return s.substring(name.length()+1);
         return s.substring(name.length()+1,k);
     }
+    private static class Listing {
+        Listing(Map<String,FileIndex.Node> children, HttpMessage res, HttpMessage gzipped) {
+            this.children = children;
+            this.res = res;
+            this.gzipped = gzipped;
+        }
+        final Map<String,FileIndex.Node> children;
+        final HttpMessage res;
+        final HttpMessage gzipped;
+    }
+    private static final int StreamedListingEntries = 1000;
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor((task)-> {
+        Thread t = new Thread(task,"timer");
+        t.setDaemon(true);
+        return t;
+    });
     private int port;
     private String rootDirectory;
     private FileRepository repository;
-    private HttpServer server;
+    private String cacheControl;
+    private AbstractServer server;
+    private int drainTimeoutMillis;
     private String hostname;
     private Random random;
+    private Router router;
+    private Map<FileIndex.Node,Listing> renderedListings;
     private final String[] args;
     private final PrintStream printStream;
 }
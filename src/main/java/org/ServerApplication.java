@@ -50,9 +50,7 @@ public class ServerApplication {
                 buildFile(res,uri);
             return res;
         });
-        new Thread(()->{
-            while (true) server.handleConnection();
-        }).start();
+        server.run();
     }
     public void addCommands() {
         commandParser.addCommand("-p",80);
@@ -0,0 +1,262 @@
+package server;
+
+import org.httpserver.HttpMessage;
+import org.httpserver.HttpServer;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+public abstract class AbstractServer extends HttpServer {
+    public static final String InternalServerError = "HTTP/1.1 500 Internal Server Error";
+
+    public AbstractServer(InetSocketAddress address) throws IOException {
+        super(address);
+        this.address = address;
+        this.printStream = System.out;
+        this.executor = ConnectionExecutors.threadPerConnection();
+        this.metrics = new Metrics();
+        this.admission = Admission.unlimited();
+        this.timer = new WheelTimer();
+        this.rejector = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(RejectQueue), (task) -> {
+            Thread t = new Thread(task, "rejector");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+    public void setAdmission(Admission admission) {
+        this.admission = admission;
+    }
+    public Admission getAdmission() {
+        return admission;
+    }
+    public void setAcceptBacklog(int acceptBacklog) {
+        this.acceptBacklog = acceptBacklog;
+    }
+    public int getAcceptBacklog() {
+        return acceptBacklog;
+    }
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+    public Metrics getMetrics() {
+        return metrics;
+    }
+    public void setAccessLog(AccessLog accessLog) {
+        this.accessLog = accessLog;
+    }
+    public AccessLog getAccessLog() {
+        return accessLog;
+    }
+    public void setConnectionExecutor(Executor executor) {
+        this.executor = executor;
+    }
+    public Executor getConnectionExecutor() {
+        return executor;
+    }
+    public void setKeepAlive(int idleTimeoutMillis, int maxRequestsPerConnection) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxRequestsPerConnection = maxRequestsPerConnection;
+    }
+    public void setSocketOptions(boolean tcpNoDelay, int sendBufferSize) {
+        this.tcpNoDelay = tcpNoDelay;
+        this.sendBufferSize = sendBufferSize;
+    }
+    public boolean getTcpNoDelay() {
+        return tcpNoDelay;
+    }
+    public int getSendBufferSize() {
+        return sendBufferSize;
+    }
+    public void setTimeouts(int headerTimeoutMillis, int bodyTimeoutMillis, int writeTimeoutMillis) {
+        this.headerTimeoutMillis = headerTimeoutMillis;
+        this.bodyTimeoutMillis = bodyTimeoutMillis;
+        this.writeTimeoutMillis = writeTimeoutMillis;
+    }
+    public int getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+    public int getHeaderTimeoutMillis() {
+        return headerTimeoutMillis;
+    }
+    public int getBodyTimeoutMillis() {
+        return bodyTimeoutMillis;
+    }
+    public int getWriteTimeoutMillis() {
+        return writeTimeoutMillis;
+    }
+    public int timeoutMillis(Phase phase) {
+        switch (phase) {
+            case Idle: return idleTimeoutMillis;
+            case Header: return headerTimeoutMillis;
+            case Body: return bodyTimeoutMillis;
+            default: return writeTimeoutMillis;
+        }
+    }
+    public int getMaxRequestsPerConnection() {
+        return maxRequestsPerConnection;
+    }
+    @Override
+    public void onConnection(Function<HttpMessage, HttpMessage> action) {
+        super.onConnection(action);
+        this.action = (req) -> CompletableFuture.completedFuture(action.apply(req));
+    }
+    public void onConnectionAsync(Function<HttpMessage, CompletableFuture<HttpMessage>> action) {
+        this.action = action;
+    }
+    @Override
+    public void setPrintStream(PrintStream printStream) {
+        super.setPrintStream(printStream);
+        this.printStream = printStream;
+    }
+    public void closeOnStop(Closeable closeable) {
+        closeables.add(closeable);
+    }
+    public boolean drain(long timeoutMillis) {
+        draining = true;
+        stopAccepting();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            while (admission.inFlight() > 0 && System.nanoTime() < deadline)
+                Thread.sleep(DrainPollMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        boolean drained = admission.inFlight() == 0;
+        stop();
+        return drained;
+    }
+    public boolean isDraining() {
+        return draining && !stopped;
+    }
+    public boolean isStopped() {
+        return stopped;
+    }
+    @Override
+    public void stop() {
+        stopped = true;
+        super.stop();
+        rejector.shutdown();
+        timer.close();
+        if (executor instanceof ExecutorService)
+            ((ExecutorService) executor).shutdown();
+        for (Closeable closeable : closeables) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {}
+        }
+    }
+    protected void stopAccepting() {
+        super.stop();
+    }
+    protected void configure(Socket socket) throws SocketException {
+        socket.setTcpNoDelay(tcpNoDelay);
+        if (sendBufferSize > 0)
+            socket.setSendBufferSize(sendBufferSize);
+    }
+    protected boolean keepAlive(HttpMessage req, HttpMessage res, int served) {
+        return Headers.keepAlive(req)
+                && !"close".equalsIgnoreCase(Headers.get(res, "Connection"))
+                && !(res instanceof StreamingMessage && ((StreamingMessage) res).delimitedByClose(req))
+                && served < maxRequestsPerConnection
+                && !draining
+                && isRunning();
+    }
+    protected boolean admit(Socket socket, String client) {
+        if (admission.admit(client))
+            return true;
+        metrics.rejected();
+        try {
+            rejector.execute(() -> reject(socket));
+        } catch (RejectedExecutionException e) {
+            close(socket);
+        }
+        return false;
+    }
+    protected static String client(Socket socket) {
+        return socket.getInetAddress() == null ? null : socket.getInetAddress().getHostAddress();
+    }
+    private void reject(Socket socket) {
+        try {
+            socket.setSoTimeout(RejectTimeoutMillis);
+            new MessageReader(new BufferedInputStream(socket.getInputStream())).read();
+        } catch (Exception ignored) {}
+        try {
+            PrerenderedMessage rejection = admission.rejection();
+            socket.getOutputStream().write(rejection.head(false));
+            socket.getOutputStream().write(rejection.body());
+            metrics.bytesOut(rejection.length(false));
+            socket.shutdownOutput();
+        } catch (IOException ignored) {}
+        close(socket);
+    }
+    private static void close(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {}
+    }
+    protected void logAccess(String remote, HttpMessage req, HttpMessage res, long nanos) {
+        AccessLog log = accessLog;
+        if (log != null)
+            log.log(remote, req, res, nanos);
+    }
+    protected CompletableFuture<HttpMessage> apply(HttpMessage req) {
+        CompletableFuture<HttpMessage> future;
+        try {
+            future = action.apply(req);
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(Failure);
+        }
+        if (future == null)
+            return CompletableFuture.completedFuture(Failure);
+        return future.handle((res, e) -> e != null || res == null ? Failure : res);
+    }
+    private static HttpMessage failure() {
+        String body = "Internal Server Error";
+        HttpMessage res = new HttpMessage();
+        res.setStartLine(InternalServerError);
+        res.putHeader("Connection", "close");
+        res.putHeader("Content-Type", "text/plain");
+        res.putHeader("Content-Length", String.valueOf(body.length()));
+        res.setBody(body);
+        return res;
+    }
+    protected final InetSocketAddress address;
+    protected PrintStream printStream;
+    protected Executor executor;
+    protected Metrics metrics;
+    protected volatile AccessLog accessLog;
+    protected volatile Admission admission;
+    protected int acceptBacklog = 50;
+    protected final WheelTimer timer;
+    private volatile int idleTimeoutMillis = 5000;
+    private volatile int headerTimeoutMillis = 10000;
+    private volatile int bodyTimeoutMillis = 30000;
+    private volatile int writeTimeoutMillis = 30000;
+    private volatile boolean draining;
+    private volatile boolean stopped;
+    private int maxRequestsPerConnection = 100;
+    private boolean tcpNoDelay = true;
+    private int sendBufferSize;
+    private Function<HttpMessage, CompletableFuture<HttpMessage>> action;
+    private final List<Closeable> closeables = new CopyOnWriteArrayList<>();
+    private final ExecutorService rejector;
+    private static final int RejectQueue = 256;
+    private static final int RejectTimeoutMillis = 200;
+    private static final int DrainPollMillis = 50;
+    private static final PrerenderedMessage Failure = new PrerenderedMessage(failure());
+}
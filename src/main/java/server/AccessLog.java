@@ -0,0 +1,222 @@
+package server;
+
+import org.httpserver.HttpMessage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+public class AccessLog implements Closeable {
+    public enum Overflow { Drop, Block }
+    public static final int DefaultCapacity = 8192;
+    public static final long DefaultMaxFileBytes = 64L * 1024 * 1024;
+    public static final int DefaultKeptFiles = 5;
+
+    public AccessLog(Path file, Overflow overflow, long flushMillis) throws IOException {
+        this(file, overflow, flushMillis, DefaultCapacity, DefaultMaxFileBytes, DefaultKeptFiles);
+    }
+    public AccessLog(Path file, Overflow overflow, long flushMillis, int capacity, long maxFileBytes, int keptFiles) throws IOException {
+        if (Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        this.file = file.toAbsolutePath();
+        this.overflow = overflow;
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMillis);
+        this.maxFileBytes = maxFileBytes;
+        this.keptFiles = keptFiles;
+        this.slots = new Record[capacity];
+        for (int i = 0; i < capacity; i++)
+            slots[i] = new Record(i - capacity);
+        this.mask = capacity - 1;
+        this.claimed = new AtomicLong();
+        this.consumed = new AtomicLong();
+        this.dropped = new LongAdder();
+        this.written = new LongAdder();
+        this.batch = ByteBuffer.allocateDirect(BatchBytes);
+        this.line = new StringBuilder(256);
+        this.channel = open();
+        this.writer = new Thread(this::drain, "access-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+    public boolean log(String remote, HttpMessage req, HttpMessage res, long nanos) {
+        long sequence;
+        while (true) {
+            if (closed) {
+                dropped.increment();
+                return false;
+            }
+            sequence = claimed.get();
+            if (sequence - consumed.get() >= slots.length) {
+                if (overflow == Overflow.Drop) {
+                    dropped.increment();
+                    return false;
+                }
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(this, BlockedParkNanos);
+                continue;
+            }
+            if (claimed.compareAndSet(sequence, sequence + 1)) break;
+        }
+        Record record = slots[(int) sequence & mask];
+        record.millis = System.currentTimeMillis();
+        record.remote = remote;
+        record.requestLine = req.getStartLine();
+        record.status = Metrics.status(res);
+        record.length = Headers.get(res, "Content-Length");
+        record.nanos = nanos;
+        record.sequence = sequence;
+        return true;
+    }
+    public long dropped() {
+        return dropped.sum();
+    }
+    public long written() {
+        return written.sum();
+    }
+    public Path getFile() {
+        return file;
+    }
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.NANOSECONDS.toMillis(flushNanos) + 5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    private void drain() {
+        long lastFlush = System.nanoTime();
+        while (true) {
+            int drained = 0;
+            long next = consumed.get();
+            Record record;
+            while ((record = slots[(int) next & mask]).sequence == next && batch.position() <= BatchBytes - MaxLineBytes) {
+                append(record);
+                consumed.lazySet(++next);
+                drained++;
+            }
+            long now = System.nanoTime();
+            boolean full = batch.position() > BatchBytes - MaxLineBytes;
+            if (batch.position() > 0 && (full || closed || now - lastFlush >= flushNanos)) {
+                flush();
+                lastFlush = now;
+            }
+            if (full || drained > 0) continue;
+            if (closed && claimed.get() == next) return;
+            long wait = batch.position() > 0 ? flushNanos - (now - lastFlush) : flushNanos;
+            LockSupport.parkNanos(this, closed ? Math.min(wait, TimeUnit.MILLISECONDS.toNanos(1)) : wait);
+        }
+    }
+    private void append(Record record) {
+        line.setLength(0);
+        line.append(record.remote == null ? "-" : record.remote).append(" - - [");
+        Timestamp.formatTo(Instant.ofEpochMilli(record.millis), line);
+        line.append("] \"").append(record.requestLine).append("\" ").append(record.status).append(' ')
+                .append(record.length == null ? "-" : record.length).append(' ');
+        appendMillis(line, record.nanos);
+        line.append('\n');
+        int length = Math.min(line.length(), MaxLineBytes);
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            batch.put(c < 0x20 && c != '\n' || c > 0x7E ? (byte) '?' : (byte) c);
+        }
+        if (length < line.length())
+            batch.put(batch.position() - 1, (byte) '\n');
+        record.remote = null;
+        record.requestLine = null;
+        record.length = null;
+        batched++;
+    }
+    private void flush() {
+        batch.flip();
+        try {
+            if (channel.size() > 0 && channel.size() + batch.remaining() > maxFileBytes)
+                rotate();
+            while (batch.hasRemaining())
+                channel.write(batch);
+            written.add(batched);
+        } catch (IOException e) {
+            dropped.add(batched);
+        }
+        batched = 0;
+        batch.clear();
+    }
+    private void rotate() throws IOException {
+        channel.close();
+        for (int i = keptFiles - 1; i >= 1; i--) {
+            Path older = rotated(i);
+            if (Files.exists(older))
+                Files.move(older, rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(file, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(rotated(keptFiles + 1));
+        channel = open();
+    }
+    private Path rotated(int n) {
+        return file.resolveSibling(file.getFileName() + "." + n);
+    }
+    private FileChannel open() throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+    private static void appendMillis(StringBuilder out, long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        out.append(micros / 1000).append('.');
+        long fraction = micros % 1000;
+        if (fraction < 100) out.append('0');
+        if (fraction < 10) out.append('0');
+        out.append(fraction);
+    }
+    private static class Record {
+        Record(long sequence) {
+            this.sequence = sequence;
+        }
+        volatile long sequence;
+        long millis;
+        String remote;
+        String requestLine;
+        String status;
+        String length;
+        long nanos;
+    }
+    private static final DateTimeFormatter Timestamp = DateTimeFormatter
+            .ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH)
+            .withZone(ZoneOffset.UTC);
+    private static final int BatchBytes = 64 * 1024;
+    private static final int MaxLineBytes = 4096;
+    private static final long BlockedParkNanos = TimeUnit.MICROSECONDS.toNanos(50);
+    private final Path file;
+    private final Overflow overflow;
+    private final long flushNanos;
+    private final long maxFileBytes;
+    private final int keptFiles;
+    private final Record[] slots;
+    private final int mask;
+    private final AtomicLong claimed;
+    private final AtomicLong consumed;
+    private final LongAdder dropped;
+    private final LongAdder written;
+    private final ByteBuffer batch;
+    private final StringBuilder line;
+    private final Thread writer;
+    private FileChannel channel;
+    private int batched;
+    private volatile boolean closed;
+}
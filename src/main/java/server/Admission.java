@@ -0,0 +1,78 @@
+package server;
+
+import org.httpserver.HttpMessage;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Admission {
+    public static final String ServiceUnavailable = "HTTP/1.1 503 Service Unavailable";
+
+    public Admission(int maxConnections, int maxConnectionsPerClient, int retryAfterSeconds) {
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerClient = maxConnectionsPerClient;
+        this.inFlight = new AtomicInteger();
+        this.perClient = new ConcurrentHashMap<>();
+        this.rejection = new PrerenderedMessage(rejection(retryAfterSeconds));
+    }
+    public static Admission unlimited() {
+        return new Admission(0, 0, 1);
+    }
+    public boolean admit(String client) {
+        if (inFlight.incrementAndGet() > maxConnections && maxConnections > 0) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        if (maxConnectionsPerClient > 0 && client != null) {
+            boolean[] admitted = {false};
+            perClient.compute(client, (key, count) -> {
+                int n = count == null ? 0 : count;
+                if (n >= maxConnectionsPerClient) return count;
+                admitted[0] = true;
+                return n + 1;
+            });
+            if (!admitted[0]) {
+                inFlight.decrementAndGet();
+                return false;
+            }
+        }
+        return true;
+    }
+    public void release(String client) {
+        inFlight.decrementAndGet();
+        if (maxConnectionsPerClient > 0 && client != null)
+            perClient.computeIfPresent(client, (key, count) -> count <= 1 ? null : count - 1);
+    }
+    public int inFlight() {
+        return inFlight.get();
+    }
+    public int inFlight(String client) {
+        Integer count = perClient.get(client);
+        return count == null ? 0 : count;
+    }
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+    public int getMaxConnectionsPerClient() {
+        return maxConnectionsPerClient;
+    }
+    public PrerenderedMessage rejection() {
+        return rejection;
+    }
+    private static HttpMessage rejection(int retryAfterSeconds) {
+        String body = "Service Unavailable";
+        HttpMessage res = new HttpMessage();
+        res.setStartLine(ServiceUnavailable);
+        res.putHeader("Retry-After", String.valueOf(retryAfterSeconds));
+        res.putHeader("Content-Type", "text/plain");
+        res.putHeader("Content-Length", String.valueOf(body.length()));
+        res.setBody(body);
+        return res;
+    }
+    private final int maxConnections;
+    private final int maxConnectionsPerClient;
+    private final AtomicInteger inFlight;
+    private final Map<String,Integer> perClient;
+    private final PrerenderedMessage rejection;
+}
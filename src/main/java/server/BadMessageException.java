@@ -0,0 +1,14 @@
+package server;
+
+public class BadMessageException extends Exception {
+    public static final String BadRequest = "HTTP/1.1 400 Bad Request";
+    public static final String PayloadTooLarge = "HTTP/1.1 413 Payload Too Large";
+
+    public BadMessageException() {
+        this(BadRequest);
+    }
+    public BadMessageException(String startLine) {
+        super(startLine + "\r\n\r\n");
+    }
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,331 @@
+package server;
+
+import org.httpserver.HttpMessage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class BlockingServer extends AbstractServer {
+    public BlockingServer(InetSocketAddress address) throws IOException {
+        super(address);
+    }
+    @Override
+    public void initialize() {
+        try {
+            channel = ServerSocketChannel.open();
+            channel.bind(address, acceptBacklog);
+            printStream.println(listeningString());
+        } catch (Exception e) {
+            printStream.println(e.getMessage());
+        }
+    }
+    @Override
+    public void handleConnection() {
+        Socket socket = listen();
+        if (socket == null) return;
+        String client = client(socket);
+        if (!admit(socket, client)) return;
+        try {
+            executor.execute(() -> respond(socket, client));
+        } catch (RejectedExecutionException e) {
+            admission.release(client);
+            close(socket);
+        }
+    }
+    @Override
+    public Socket listen() {
+        try {
+            return channel.accept().socket();
+        } catch (IOException e) {return null;}
+    }
+    @Override
+    public void stop() {
+        super.stop();
+        stopAccepting();
+        for (Socket socket : connections)
+            close(socket);
+    }
+    @Override
+    protected void stopAccepting() {
+        try {
+            if (channel != null) channel.close();
+        } catch (IOException ignored) {}
+    }
+    @Override
+    public boolean isBound() {
+        return channel != null && channel.socket().isBound();
+    }
+    @Override
+    public boolean isRunning() {
+        return isBound() && channel.isOpen();
+    }
+    @Override
+    public SocketAddress socketAddress() {
+        return channel == null ? null : channel.socket().getLocalSocketAddress();
+    }
+    @Override
+    public ServerSocket getServer() {
+        return channel == null ? super.getServer() : channel.socket();
+    }
+    private void respond(Socket socket, String client) {
+        metrics.connectionOpened();
+        connections.add(socket);
+        try {
+            configure(socket);
+            TimedInputStream timed = new TimedInputStream(socket);
+            CountingOutputStream out = new CountingOutputStream(socket);
+            MessageReader reader = new MessageReader(new BufferedInputStream(new CountingInputStream(timed)));
+            reader.setPhases(timed::enter);
+            int served = 0;
+            boolean keepAlive = true;
+            while (keepAlive) {
+                HttpMessage req = reader.read();
+                if (req == null) break;
+                served++;
+                long start = System.nanoTime();
+                HttpMessage res = apply(req).join();
+                logAccess(client, req, res, System.nanoTime() - start);
+                keepAlive = keepAlive(req, res, served);
+                WriteWatchdog watchdog = getWriteTimeoutMillis() > 0 ? new WriteWatchdog(socket, out) : null;
+                try {
+                    write(out, req, res, keepAlive);
+                } finally {
+                    if (watchdog != null) watchdog.done();
+                }
+            }
+        } catch (BadMessageException e) {
+            metrics.parseError();
+            send(socket, e.getMessage().getBytes());
+        } catch (IOException ignored) {
+        } finally {
+            connections.remove(socket);
+            close(socket);
+            metrics.connectionClosed();
+            admission.release(client);
+            BufferPool.flushThreadCaches();
+        }
+    }
+    private void write(CountingOutputStream out, HttpMessage req, HttpMessage res, boolean keepAlive) throws IOException {
+        if (res instanceof PrerenderedMessage) {
+            PrerenderedMessage prerendered = (PrerenderedMessage) res;
+            gather(out, ByteBuffer.wrap(prerendered.head(keepAlive)), ByteBuffer.wrap(prerendered.body()));
+            return;
+        }
+        if (res instanceof StreamingMessage) {
+            boolean chunked = ((StreamingMessage) res).chunked(req);
+            out.write(MessageWriter.streamingHead(res, chunked, keepAlive));
+            ((StreamingMessage) res).writeTo(new BufferedOutputStream(out, ChunkedOutputStream.ChunkSize + 16), chunked);
+            return;
+        }
+        if (res instanceof BufferMessage) {
+            try {
+                gather(out, ByteBuffer.wrap(MessageWriter.head(res, keepAlive)), ((BufferMessage) res).buffer());
+            } finally {
+                ((BufferMessage) res).release();
+            }
+            return;
+        }
+        byte[] body = res.getBody();
+        if (Objects.nonNull(body))
+            gather(out, ByteBuffer.wrap(MessageWriter.head(res, keepAlive)), ByteBuffer.wrap(body));
+        else
+            out.write(MessageWriter.head(res, keepAlive));
+        if (res instanceof FileMessage)
+            ((FileMessage) res).transferTo(out.channel, WriteSlice, out::transferred);
+    }
+    @Override
+    public void send(Socket socket, byte[] bytes) {
+        super.send(socket, bytes);
+        metrics.bytesOut(bytes.length);
+    }
+    private void gather(CountingOutputStream out, ByteBuffer... buffers) throws IOException {
+        long length = 0;
+        for (ByteBuffer buffer : buffers)
+            length += buffer.remaining();
+        if (length > BufferPool.SizeClasses[BufferPool.SizeClasses.length - 1]) {
+            for (ByteBuffer buffer : buffers)
+                write(out, buffer);
+            return;
+        }
+        ByteBuffer coalesced = BufferPool.Heap.acquire((int) length);
+        try {
+            for (ByteBuffer buffer : buffers)
+                coalesced.put(buffer);
+            out.write(coalesced.array(), 0, coalesced.position());
+        } finally {
+            BufferPool.Heap.release(coalesced);
+        }
+    }
+    private void write(CountingOutputStream out, ByteBuffer buffer) throws IOException {
+        if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+        int limit = buffer.limit();
+        try {
+            while (buffer.hasRemaining()) {
+                buffer.limit(Math.min(limit, buffer.position() + WriteSlice));
+                out.transferred(out.channel.write(buffer));
+                buffer.limit(limit);
+            }
+        } finally {
+            buffer.limit(limit);
+        }
+    }
+    private class CountingInputStream extends FilterInputStream {
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) metrics.bytesIn(1);
+            return b;
+        }
+        @Override
+        public int read(byte[] bytes, int off, int len) throws IOException {
+            int n = super.read(bytes, off, len);
+            metrics.bytesIn(n);
+            return n;
+        }
+    }
+    private class CountingOutputStream extends FilterOutputStream {
+        CountingOutputStream(Socket socket) throws IOException {
+            super(socket.getOutputStream());
+            this.channel = socket.getChannel();
+        }
+        void transferred(long n) {
+            written += n;
+            metrics.bytesOut(n);
+        }
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            written++;
+            metrics.bytesOut(1);
+        }
+        @Override
+        public void write(byte[] bytes, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, WriteSlice);
+                out.write(bytes, off, n);
+                written += n;
+                metrics.bytesOut(n);
+                off += n;
+                len -= n;
+            }
+        }
+        final SocketChannel channel;
+        volatile long written;
+    }
+    private class TimedInputStream extends FilterInputStream {
+        TimedInputStream(Socket socket) {
+            super(getInput(socket));
+            this.socket = socket;
+            this.phase = Phase.Idle;
+        }
+        void enter(Phase phase) {
+            if (phase == Phase.Header) reused = true;
+            this.phase = phase;
+            long millis = timeoutMillis(phase);
+            deadline = millis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis) : 0;
+        }
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+        @Override
+        public int read(byte[] bytes, int off, int len) throws IOException {
+            while (true) {
+                if (drained()) return -1;
+                arm();
+                try {
+                    return super.read(bytes, off, len);
+                } catch (SocketTimeoutException e) {
+                    if (deadline == 0 ? !drainable() : deadline - System.nanoTime() <= 0)
+                        throw timedOut(e);
+                }
+            }
+        }
+        private void arm() throws IOException {
+            long remaining = deadline == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (deadline != 0 && remaining <= 0)
+                throw timedOut(new SocketTimeoutException(phase + " timeout"));
+            if (drainable())
+                remaining = remaining == 0 ? IdlePollMillis : Math.min(remaining, IdlePollMillis);
+            socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, remaining));
+        }
+        private boolean drainable() {
+            return phase == Phase.Idle && reused;
+        }
+        private boolean drained() {
+            return drainable() && isDraining();
+        }
+        private SocketTimeoutException timedOut(SocketTimeoutException e) {
+            metrics.timedOut(phase);
+            return e;
+        }
+        private final Socket socket;
+        private Phase phase;
+        private long deadline;
+        private boolean reused;
+    }
+    private class WriteWatchdog implements Runnable {
+        WriteWatchdog(Socket socket, CountingOutputStream out) {
+            this.socket = socket;
+            this.out = out;
+            arm();
+        }
+        @Override
+        public void run() {
+            if (done) return;
+            if (out.written != mark) {
+                arm();
+                return;
+            }
+            metrics.timedOut(Phase.Write);
+            close(socket);
+        }
+        void done() {
+            done = true;
+            timeout.cancel();
+        }
+        private void arm() {
+            mark = out.written;
+            timeout = timer.schedule(this, getWriteTimeoutMillis());
+        }
+        private final Socket socket;
+        private final CountingOutputStream out;
+        private volatile boolean done;
+        private volatile WheelTimer.Timeout timeout;
+        private long mark;
+    }
+    private void close(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {}
+    }
+    private static final int WriteSlice = 65536;
+    private static final int IdlePollMillis = 250;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private ServerSocketChannel channel;
+}
@@ -0,0 +1,32 @@
+package server;
+
+import org.httpserver.HttpMessage;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class BufferMessage extends HttpMessage {
+    public BufferMessage(ByteBuffer buffer, Runnable release) {
+        super();
+        this.buffer = buffer;
+        this.release = release;
+        this.released = new AtomicBoolean();
+    }
+    public ByteBuffer buffer() {
+        return buffer.duplicate();
+    }
+    public int getLength() {
+        return buffer.remaining();
+    }
+    public void release() {
+        if (released.compareAndSet(false, true) && release != null)
+            release.run();
+    }
+    @Override
+    public byte[] getBody() {
+        return null;
+    }
+    private final ByteBuffer buffer;
+    private final Runnable release;
+    private final AtomicBoolean released;
+}
@@ -0,0 +1,164 @@
+package server;
+
+import java.io.PrintStream;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class BufferPool {
+    public static final int[] SizeClasses = {4096, 16384, 65536};
+    public static final int ThreadCacheSize = 16;
+    public static final int SharedCacheSize = 1024;
+    public static final BufferPool Direct = new BufferPool(true, Boolean.getBoolean("server.buffers.debug"));
+    public static final BufferPool Heap = new BufferPool(false, Boolean.getBoolean("server.buffers.debug"));
+
+    public BufferPool(boolean direct, boolean leakDetection) {
+        this.direct = direct;
+        this.leakDetection = leakDetection;
+        this.shared = new ArrayList<>(SizeClasses.length);
+        for (int i = 0; i < SizeClasses.length; i++)
+            shared.add(new ArrayBlockingQueue<>(SharedCacheSize));
+        this.local = ThreadLocal.withInitial(() -> {
+            List<ArrayDeque<ByteBuffer>> caches = new ArrayList<>(SizeClasses.length);
+            for (int i = 0; i < SizeClasses.length; i++)
+                caches.add(new ArrayDeque<>(ThreadCacheSize));
+            return caches;
+        });
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.leaks = new LongAdder();
+        this.outstanding = new ConcurrentHashMap<>();
+        this.collected = new ReferenceQueue<>();
+        this.printStream = System.err;
+    }
+    public ByteBuffer acquire(int size) {
+        int c = sizeClass(size);
+        if (c == -1) {
+            misses.increment();
+            return allocate(size);
+        }
+        ByteBuffer buffer = local.get().get(c).poll();
+        if (buffer == null)
+            buffer = shared.get(c).poll();
+        if (buffer == null) {
+            misses.increment();
+            buffer = allocate(SizeClasses[c]);
+        } else {
+            hits.increment();
+            buffer.clear();
+        }
+        if (leakDetection)
+            track(buffer);
+        return buffer;
+    }
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.isDirect() != direct) return;
+        int c = sizeClass(buffer.capacity());
+        if (c == -1 || SizeClasses[c] != buffer.capacity()) return;
+        if (leakDetection && outstanding.remove(new Leak(buffer, null, null)) == null)
+            throw new IllegalStateException("Buffer released twice or not acquired from this pool");
+        ArrayDeque<ByteBuffer> cache = local.get().get(c);
+        if (cache.size() < ThreadCacheSize)
+            cache.push(buffer);
+        else
+            shared.get(c).offer(buffer);
+    }
+    public void flushThreadCache() {
+        List<ArrayDeque<ByteBuffer>> caches = local.get();
+        for (int c = 0; c < caches.size(); c++) {
+            ByteBuffer buffer;
+            while ((buffer = caches.get(c).poll()) != null)
+                shared.get(c).offer(buffer);
+        }
+    }
+    public static void flushThreadCaches() {
+        Direct.flushThreadCache();
+        Heap.flushThreadCache();
+    }
+    public int shared() {
+        int n = 0;
+        for (BlockingQueue<ByteBuffer> queue : shared)
+            n += queue.size();
+        return n;
+    }
+    public boolean isDirect() {
+        return direct;
+    }
+    public long hits() {
+        return hits.sum();
+    }
+    public long misses() {
+        return misses.sum();
+    }
+    public long leaks() {
+        if (leakDetection) collect();
+        return leaks.sum();
+    }
+    public int outstanding() {
+        return outstanding.size();
+    }
+    public void setPrintStream(PrintStream printStream) {
+        this.printStream = printStream;
+    }
+
+    private ByteBuffer allocate(int size) {
+        return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+    private void track(ByteBuffer buffer) {
+        collect();
+        Leak leak = new Leak(buffer, collected, new Throwable("Buffer acquired here was never released"));
+        outstanding.put(leak, leak);
+    }
+    private void collect() {
+        Leak leak;
+        while ((leak = (Leak) collected.poll()) != null) {
+            if (outstanding.remove(leak) != null) {
+                leaks.increment();
+                leak.site.printStackTrace(printStream);
+            }
+        }
+    }
+    private static int sizeClass(int size) {
+        for (int i = 0; i < SizeClasses.length; i++)
+            if (size <= SizeClasses[i]) return i;
+        return -1;
+    }
+    private static class Leak extends WeakReference<ByteBuffer> {
+        Leak(ByteBuffer buffer, ReferenceQueue<ByteBuffer> queue, Throwable site) {
+            super(buffer, queue);
+            this.hash = System.identityHashCode(buffer);
+            this.site = site;
+        }
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Leak)) return false;
+            ByteBuffer buffer = get();
+            return buffer != null && buffer == ((Leak) o).get();
+        }
+        final int hash;
+        final Throwable site;
+    }
+    private final boolean direct;
+    private final boolean leakDetection;
+    private final List<BlockingQueue<ByteBuffer>> shared;
+    private final ThreadLocal<List<ArrayDeque<ByteBuffer>>> local;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder leaks;
+    private final Map<Leak,Leak> outstanding;
+    private final ReferenceQueue<ByteBuffer> collected;
+    private volatile PrintStream printStream;
+}
@@ -0,0 +1,104 @@
+package server;
+
+import java.util.Arrays;
+
+public class ChunkedDecoder {
+    public ChunkedDecoder(int maxBodyLength) {
+        this.maxBodyLength = maxBodyLength;
+        this.body = new byte[256];
+    }
+    public int decode(byte[] bytes, int from, int to) throws BadMessageException {
+        int i = from;
+        while (i < to && state != Done) {
+            byte b = bytes[i];
+            switch (state) {
+                case Size:
+                    i++;
+                    if (b == '\n') {
+                        if (digits == 0) throw new BadMessageException();
+                        state = chunkRemaining == 0 ? Trailer : Data;
+                    } else if (b == ';' || b == ' ' || b == '\t')
+                        state = Extension;
+                    else if (b != '\r')
+                        digit(b);
+                    break;
+                case Extension:
+                    i++;
+                    if (b == '\n') {
+                        if (digits == 0) throw new BadMessageException();
+                        state = chunkRemaining == 0 ? Trailer : Data;
+                    }
+                    break;
+                case Data:
+                    int n = (int) Math.min(to - i, chunkRemaining);
+                    append(bytes, i, n);
+                    i += n;
+                    chunkRemaining -= n;
+                    if (chunkRemaining == 0) state = DataEnd;
+                    break;
+                case DataEnd:
+                    i++;
+                    if (b == '\n') {
+                        state = Size;
+                        digits = 0;
+                    } else if (b != '\r')
+                        throw new BadMessageException();
+                    break;
+                case Trailer:
+                    i++;
+                    if (b == '\n') {
+                        if (lineLength == 0) state = Done;
+                        lineLength = 0;
+                    } else if (b != '\r') {
+                        if (++lineLength > MessageReader.MaxHeadLength) throw new BadMessageException();
+                    }
+                    break;
+            }
+        }
+        return i;
+    }
+    public int needs() {
+        if (state == Done) return 0;
+        if (state == Data) return (int) Math.min(Integer.MAX_VALUE, chunkRemaining);
+        return 1;
+    }
+    public boolean isDone() {
+        return state == Done;
+    }
+    public byte[] body() {
+        return Arrays.copyOf(body, length);
+    }
+    public void reset() {
+        state = Size;
+        digits = 0;
+        chunkRemaining = 0;
+        lineLength = 0;
+        length = 0;
+    }
+    private void digit(byte b) throws BadMessageException {
+        int value = Character.digit(b, 16);
+        if (value == -1 || digits == 16) throw new BadMessageException();
+        chunkRemaining = chunkRemaining * 16 + value;
+        digits++;
+        if (chunkRemaining > maxBodyLength - length) throw new BadMessageException();
+    }
+    private void append(byte[] bytes, int from, int n) {
+        if (length + n > body.length)
+            body = Arrays.copyOf(body, Math.max(length + n, body.length * 2));
+        System.arraycopy(bytes, from, body, length, n);
+        length += n;
+    }
+    private static final int Size = 0;
+    private static final int Extension = 1;
+    private static final int Data = 2;
+    private static final int DataEnd = 3;
+    private static final int Trailer = 4;
+    private static final int Done = 5;
+    private final int maxBodyLength;
+    private byte[] body;
+    private int length;
+    private int state;
+    private int digits;
+    private long chunkRemaining;
+    private int lineLength;
+}
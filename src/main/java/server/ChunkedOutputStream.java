@@ -0,0 +1,65 @@
+package server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+public class ChunkedOutputStream extends OutputStream {
+    public static final int ChunkSize = 8192;
+
+    public ChunkedOutputStream(OutputStream out) {
+        this(out, ChunkSize);
+    }
+    public ChunkedOutputStream(OutputStream out, int chunkSize) {
+        this.out = out;
+        this.buffer = new byte[chunkSize];
+    }
+    @Override
+    public void write(int b) throws IOException {
+        if (closed) throw new IOException("Stream closed");
+        if (count == buffer.length) writeChunk();
+        buffer[count++] = (byte) b;
+    }
+    @Override
+    public void write(byte[] bytes, int off, int len) throws IOException {
+        if (closed) throw new IOException("Stream closed");
+        if (len >= buffer.length) {
+            writeChunk();
+            writeChunk(bytes, off, len);
+            return;
+        }
+        if (count + len > buffer.length) writeChunk();
+        System.arraycopy(bytes, off, buffer, count, len);
+        count += len;
+    }
+    @Override
+    public void flush() throws IOException {
+        if (closed) return;
+        writeChunk();
+        out.flush();
+    }
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        writeChunk();
+        out.write(LastChunk);
+        out.flush();
+    }
+    private void writeChunk() throws IOException {
+        writeChunk(buffer, 0, count);
+        count = 0;
+    }
+    private void writeChunk(byte[] bytes, int off, int len) throws IOException {
+        if (len == 0) return;
+        out.write((Integer.toHexString(len) + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        out.write(bytes, off, len);
+        out.write(CRLF);
+    }
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] LastChunk = {'0', '\r', '\n', '\r', '\n'};
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int count;
+    private boolean closed;
+}
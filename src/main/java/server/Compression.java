@@ -0,0 +1,84 @@
+package server;
+
+import org.httpserver.HttpMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+public class Compression {
+    public static final int MinLength = 256;
+
+    public static boolean acceptsGzip(HttpMessage req) {
+        String accept = Headers.get(req, "Accept-Encoding");
+        if (accept == null) return false;
+        double gzip = -1;
+        double any = -1;
+        for (String part : accept.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim();
+            double q = quality(params);
+            if (coding.equalsIgnoreCase("gzip") || coding.equalsIgnoreCase("x-gzip"))
+                gzip = Math.max(gzip, q);
+            else if (coding.equals("*"))
+                any = q;
+        }
+        return gzip != -1 ? gzip > 0 : any > 0;
+    }
+    public static boolean compressible(String contentType) {
+        if (contentType == null) return false;
+        String type = contentType.toLowerCase();
+        int semicolon = type.indexOf(';');
+        if (semicolon != -1) type = type.substring(0, semicolon).trim();
+        return type.startsWith("text/")
+                || type.endsWith("+xml")
+                || type.endsWith("+json")
+                || type.equals("application/json")
+                || type.equals("application/javascript")
+                || type.equals("application/xml");
+    }
+    public static boolean worthCompressing(String contentType, long length) {
+        return length >= MinLength && compressible(contentType);
+    }
+    public static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 32);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 8192)) {
+            gzip.write(data);
+        } catch (IOException e) {throw new UncheckedIOException(e);}
+        return out.toByteArray();
+    }
+    public static HttpMessage gzipped(HttpMessage res) {
+        byte[] body = res.getBody();
+        if (body == null || !worthCompressing(Headers.get(res, "Content-Type"), body.length))
+            return res;
+        byte[] compressed = gzip(body);
+        if (compressed.length >= body.length)
+            return res;
+        HttpMessage gzipped = new HttpMessage();
+        gzipped.setStartLine(res.getStartLine());
+        for (Map.Entry<String,String> e : res.getHeaderFields().entrySet())
+            if (!e.getKey().equalsIgnoreCase("Content-Length") && !e.getKey().equalsIgnoreCase("ETag"))
+                gzipped.putHeader(e.getKey(), e.getValue());
+        gzipped.putHeader("Content-Length", String.valueOf(compressed.length));
+        gzipped.putHeader("Content-Encoding", "gzip");
+        if (Headers.has(res, "ETag"))
+            gzipped.putHeader("ETag", Conditionals.variant(Headers.get(res, "ETag"), "gzip"));
+        if (!Headers.has(res, "Vary"))
+            gzipped.putHeader("Vary", "Accept-Encoding");
+        gzipped.setBody(compressed);
+        return gzipped;
+    }
+    private static double quality(String[] params) {
+        for (int i = 1; i < params.length; i++) {
+            String param = params[i].trim();
+            if (param.startsWith("q=") || param.startsWith("Q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2).trim());
+                } catch (NumberFormatException e) {return 0;}
+            }
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,73 @@
+package server;
+
+import org.httpserver.HttpMessage;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+public class Conditionals {
+    public static final String NotModified = "HTTP/1.1 304 Not Modified";
+    private static final String[] ValidatorHeaders = {"ETag", "Last-Modified", "Cache-Control", "Expires", "Vary", "Content-Location"};
+    private static final DateTimeFormatter HttpDate = DateTimeFormatter
+            .ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.ENGLISH)
+            .withZone(ZoneOffset.UTC);
+
+    public static String etag(long size, long modified) {
+        return "\"" + Long.toHexString(size) + "-" + Long.toHexString(modified) + "\"";
+    }
+    public static String variant(String etag, String suffix) {
+        if (etag == null || !etag.endsWith("\"")) return etag;
+        return etag.substring(0, etag.length() - 1) + "-" + suffix + "\"";
+    }
+    public static String httpDate(long millis) {
+        return HttpDate.format(Instant.ofEpochMilli(millis));
+    }
+    public static long parseHttpDate(String date) {
+        try {
+            return ZonedDateTime.parse(date.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (Exception e) {return -1;}
+    }
+    public static boolean notModified(HttpMessage req, HttpMessage res) {
+        String etag = Headers.get(res, "ETag");
+        String ifNoneMatch = Headers.get(req, "If-None-Match");
+        if (ifNoneMatch != null)
+            return etag != null && matches(ifNoneMatch, etag);
+        String lastModified = Headers.get(res, "Last-Modified");
+        String ifModifiedSince = Headers.get(req, "If-Modified-Since");
+        if (ifModifiedSince == null || lastModified == null) return false;
+        long since = parseHttpDate(ifModifiedSince);
+        long modified = parseHttpDate(lastModified);
+        return since != -1 && modified != -1 && modified <= since;
+    }
+    public static HttpMessage notModifiedResponse(HttpMessage res) {
+        HttpMessage notModified = new HttpMessage();
+        notModified.setStartLine(NotModified);
+        for (String name : ValidatorHeaders) {
+            String value = Headers.get(res, name);
+            if (value != null) notModified.putHeader(name, value);
+        }
+        return notModified;
+    }
+    public static boolean allowsBody(HttpMessage res) {
+        String startLine = res.getStartLine();
+        if (startLine == null || startLine.length() < 12) return true;
+        char first = startLine.charAt(9);
+        String status = startLine.substring(9, 12);
+        return first != '1' && !status.equals("204") && !status.equals("304");
+    }
+    private static boolean matches(String ifNoneMatch, String etag) {
+        String opaque = weakless(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || weakless(tag).equals(opaque))
+                return true;
+        }
+        return false;
+    }
+    private static String weakless(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+}
@@ -0,0 +1,41 @@
+package server;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class ConnectionExecutors {
+    public static Executor fromOption(String option) {
+        if (option.equals("threads"))
+            return threadPerConnection();
+        if (option.equals("virtual"))
+            return virtual();
+        if (option.startsWith("pool:"))
+            return pool(Integer.parseInt(option.substring("pool:".length())));
+        throw new IllegalArgumentException(option);
+    }
+    public static Executor threadPerConnection() {
+        return (task) -> new Thread(task).start();
+    }
+    public static ExecutorService pool(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("pool:" + threads);
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>());
+    }
+    public static Executor virtual() {
+        try {
+            Method m = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (Executor) m.invoke(null);
+        } catch (Exception e) {return threadPerConnection();}
+    }
+    public static boolean supportsVirtualThreads() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (Exception e) {return false;}
+    }
+}
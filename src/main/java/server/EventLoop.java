@@ -0,0 +1,83 @@
+package server;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+class EventLoop implements Runnable {
+    EventLoop(NioServer server) throws IOException {
+        this.server = server;
+        this.selector = Selector.open();
+        this.tasks = new ConcurrentLinkedQueue<>();
+    }
+    @Override
+    public void run() {
+        while (server.isRunning() || server.isDraining()) {
+            try {
+                selector.select(1000);
+            } catch (IOException e) {break;}
+            runTasks();
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                NioConnection connection = (NioConnection) key.attachment();
+                try {
+                    if (key.isValid() && key.isReadable())
+                        connection.onReadable();
+                    if (key.isValid() && key.isWritable())
+                        connection.onWritable();
+                } catch (RuntimeException | OutOfMemoryError e) {
+                    connection.close();
+                }
+            }
+        }
+        for (SelectionKey key : selector.keys())
+            ((NioConnection) key.attachment()).close();
+        try {
+            selector.close();
+        } catch (IOException ignored) {}
+    }
+    void register(SocketChannel channel, String remote) {
+        execute(() -> {
+            try {
+                channel.configureBlocking(false);
+                server.configure(channel.socket());
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new NioConnection(server, this, channel, key, remote));
+                server.getMetrics().connectionOpened();
+            } catch (IOException e) {
+                server.getAdmission().release(remote);
+                try {
+                    channel.close();
+                } catch (IOException ignored) {}
+            }
+        });
+    }
+    void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+    void drain() {
+        execute(() -> {
+            for (SelectionKey key : selector.keys())
+                if (key.attachment() != null)
+                    ((NioConnection) key.attachment()).drain();
+        });
+    }
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException ignored) {}
+        }
+    }
+    private final NioServer server;
+    private final Selector selector;
+    private final Queue<Runnable> tasks;
+}
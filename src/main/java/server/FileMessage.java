@@ -0,0 +1,53 @@
+package server;
+
+import org.httpserver.HttpMessage;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongConsumer;
+
+public class FileMessage extends HttpMessage {
+    public FileMessage(Path path) throws IOException {
+        this(path, 0, Files.size(path));
+    }
+    public FileMessage(Path path, long position, long count) {
+        super();
+        this.path = path;
+        this.position = position;
+        this.count = count;
+    }
+    public Path getPath() {
+        return path;
+    }
+    public long getPosition() {
+        return position;
+    }
+    public long getCount() {
+        return count;
+    }
+    public FileChannel open() throws IOException {
+        return FileChannel.open(path, StandardOpenOption.READ);
+    }
+    public void transferTo(WritableByteChannel target) throws IOException {
+        transferTo(target, Long.MAX_VALUE, (n) -> {});
+    }
+    public void transferTo(WritableByteChannel target, long slice, LongConsumer progress) throws IOException {
+        try (FileChannel file = open()) {
+            long sent = 0;
+            while (sent < count) {
+                long n = file.transferTo(position + sent, Math.min(slice, count - sent), target);
+                if (n <= 0 && position + sent >= file.size())
+                    throw new IOException("File shrank while sending " + path);
+                sent += n;
+                progress.accept(n);
+            }
+        }
+    }
+    private final Path path;
+    private final long position;
+    private final long count;
+}
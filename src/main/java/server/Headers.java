@@ -0,0 +1,33 @@
+package server;
+
+import org.httpserver.HttpMessage;
+
+import java.util.Map;
+
+public class Headers {
+    public static String get(HttpMessage message, String name) {
+        if (message instanceof ParsedMessage)
+            return ((ParsedMessage) message).header(name);
+        return get(message.getHeaderFields(), name);
+    }
+    public static String get(Map<String,String> fields, String name) {
+        String value = fields.get(name);
+        if (value != null) return value;
+        for (Map.Entry<String,String> e : fields.entrySet())
+            if (e.getKey().equalsIgnoreCase(name))
+                return e.getValue();
+        return null;
+    }
+    public static boolean has(HttpMessage message, String name) {
+        return get(message, name) != null;
+    }
+    public static boolean acceptsChunked(HttpMessage req) {
+        return !req.getStartLine().endsWith("HTTP/1.0");
+    }
+    public static boolean keepAlive(HttpMessage req) {
+        String connection = get(req, "Connection");
+        if (req.getStartLine().endsWith("HTTP/1.0"))
+            return "keep-alive".equalsIgnoreCase(connection);
+        return !"close".equalsIgnoreCase(connection);
+    }
+}
@@ -0,0 +1,55 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class Histogram {
+    public static final long[] BoundsNanos = {
+            100_000L, 250_000L, 500_000L,
+            1_000_000L, 2_500_000L, 5_000_000L,
+            10_000_000L, 25_000_000L, 50_000_000L,
+            100_000_000L, 250_000_000L, 500_000_000L,
+            1_000_000_000L, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L};
+    public static final int Stripes = 8;
+
+    public Histogram() {
+        this.counts = new AtomicLongArray(Stripes * Width);
+        this.sumNanos = new LongAdder();
+    }
+    public void record(long nanos) {
+        int bucket = bucket(nanos);
+        int stripe = (int) Thread.currentThread().getId() & (Stripes - 1);
+        counts.incrementAndGet(stripe * Width + bucket);
+        sumNanos.add(Math.max(0, nanos));
+    }
+    public long[] cumulativeCounts() {
+        long[] cumulative = new long[BoundsNanos.length + 1];
+        long total = 0;
+        for (int bucket = 0; bucket < cumulative.length; bucket++) {
+            for (int stripe = 0; stripe < Stripes; stripe++)
+                total += counts.get(stripe * Width + bucket);
+            cumulative[bucket] = total;
+        }
+        return cumulative;
+    }
+    public long count() {
+        long[] cumulative = cumulativeCounts();
+        return cumulative[cumulative.length - 1];
+    }
+    public long sumNanos() {
+        return sumNanos.sum();
+    }
+    private static int bucket(long nanos) {
+        int low = 0;
+        int high = BoundsNanos.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (nanos <= BoundsNanos[mid]) high = mid;
+            else low = mid + 1;
+        }
+        return low;
+    }
+    private static final int Width = BoundsNanos.length + 1;
+    private final AtomicLongArray counts;
+    private final LongAdder sumNanos;
+}
@@ -0,0 +1,111 @@
+package server;
+
+import org.httpserver.HttpMessage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+public class MessageReader {
+    public static final int MaxHeadLength = 8192;
+    public static final int MaxBodyLength = 16 * 1024 * 1024;
+    public static final int MaxChunkedBodyLength = MaxBodyLength;
+
+    public MessageReader(InputStream in) {
+        this.in = in;
+        this.head = new byte[MaxHeadLength];
+        this.parser = new RequestParser();
+    }
+    public void setPhases(Consumer<Phase> phases) {
+        this.phases = phases;
+    }
+    public HttpMessage read() throws IOException, BadMessageException {
+        enter(Phase.Idle);
+        int end = readHead();
+        if (end == -1) return null;
+        HttpMessage message = RequestParser.parse(head, 0, end);
+        if (chunked(message)) {
+            enter(Phase.Body);
+            message.setBody(readChunkedBody());
+            return message;
+        }
+        int length = contentLength(message);
+        if (length != -1) {
+            enter(Phase.Body);
+            message.setBody(readBody(length));
+        }
+        return message;
+    }
+    public static boolean chunked(HttpMessage message) throws BadMessageException {
+        String encoding = Headers.get(message, "Transfer-Encoding");
+        if (encoding == null) return false;
+        if (!encoding.trim().equalsIgnoreCase("chunked") || Headers.has(message, "Content-Length"))
+            throw new BadMessageException();
+        return true;
+    }
+    public static int contentLength(HttpMessage message) throws BadMessageException {
+        String length = Headers.get(message, "Content-Length");
+        if (length == null) return -1;
+        int n;
+        try {
+            n = Integer.parseInt(length.trim());
+        } catch (Exception e) {throw new BadMessageException();}
+        if (n < 0) throw new BadMessageException();
+        if (n > MaxBodyLength) throw new BadMessageException(BadMessageException.PayloadTooLarge);
+        return n;
+    }
+    private int readHead() throws IOException, BadMessageException {
+        int length = 0;
+        int b;
+        while ((b = in.read()) != -1) {
+            if (length == 0 && (b == '\r' || b == '\n'))
+                continue;
+            if (length == 0)
+                enter(Phase.Header);
+            if (length == head.length)
+                throw new BadMessageException();
+            head[length++] = (byte) b;
+            int end = parser.headEnd(head, 0, length);
+            if (end != -1) return end;
+        }
+        parser.reset();
+        if (length == 0) return -1;
+        throw new BadMessageException();
+    }
+    private void enter(Phase phase) {
+        if (phases != null) phases.accept(phase);
+    }
+    private byte[] readBody(int n) throws IOException, BadMessageException {
+        byte[] body = new byte[n];
+        int read = 0;
+        while (read < n) {
+            int r = in.read(body, read, n - read);
+            if (r == -1) throw new BadMessageException();
+            read += r;
+        }
+        return body;
+    }
+    private byte[] readChunkedBody() throws IOException, BadMessageException {
+        if (decoder == null) decoder = new ChunkedDecoder(MaxChunkedBodyLength);
+        decoder.reset();
+        ByteBuffer pooled = BufferPool.Heap.acquire(ChunkedReadSize);
+        try {
+            byte[] buffer = pooled.array();
+            while (!decoder.isDone()) {
+                int r = in.read(buffer, 0, Math.min(ChunkedReadSize, decoder.needs()));
+                if (r == -1) throw new BadMessageException();
+                decoder.decode(buffer, 0, r);
+            }
+            return decoder.body();
+        } finally {
+            BufferPool.Heap.release(pooled);
+        }
+    }
+    private static final int ChunkedReadSize = 4096;
+    private final InputStream in;
+    private final byte[] head;
+    private final RequestParser parser;
+    private ChunkedDecoder decoder;
+    private Consumer<Phase> phases;
+}
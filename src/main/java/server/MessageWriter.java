@@ -0,0 +1,78 @@
+package server;
+
+import org.httpserver.HttpMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+public class MessageWriter {
+    public static byte[] head(HttpMessage res, boolean keepAlive) {
+        return head(res, bodyLength(res), keepAlive);
+    }
+    public static byte[] head(HttpMessage res, long bodyLength, boolean keepAlive) {
+        return bytes(buildHead(res, bodyLength, keepAlive));
+    }
+    public static ByteBuffer head(HttpMessage res, boolean keepAlive, BufferPool pool) {
+        return encode(buildHead(res, bodyLength(res), keepAlive), pool);
+    }
+    public static byte[] streamingHead(HttpMessage res, boolean chunked, boolean keepAlive) {
+        return bytes(buildStreamingHead(res, chunked, keepAlive));
+    }
+    public static ByteBuffer streamingHead(HttpMessage res, boolean chunked, boolean keepAlive, BufferPool pool) {
+        return encode(buildStreamingHead(res, chunked, keepAlive), pool);
+    }
+    private static StringBuilder buildHead(HttpMessage res, long bodyLength, boolean keepAlive) {
+        StringBuilder head = startHead(res);
+        if (!Headers.has(res, "Content-Length") && Conditionals.allowsBody(res))
+            head.append("Content-Length: ").append(bodyLength).append("\r\n");
+        return endHead(head, keepAlive);
+    }
+    private static StringBuilder buildStreamingHead(HttpMessage res, boolean chunked, boolean keepAlive) {
+        StringBuilder head = new StringBuilder(128);
+        head.append(res.getStartLine()).append("\r\n");
+        for (Map.Entry<String,String> e : res.getHeaderFields().entrySet())
+            if (!e.getKey().equalsIgnoreCase("Connection")
+                    && !e.getKey().equalsIgnoreCase("Content-Length")
+                    && !e.getKey().equalsIgnoreCase("Transfer-Encoding"))
+                head.append(e.getKey()).append(": ").append(e.getValue()).append("\r\n");
+        if (chunked)
+            head.append("Transfer-Encoding: chunked\r\n");
+        else if (res instanceof StreamingMessage && ((StreamingMessage) res).getLength() >= 0)
+            head.append("Content-Length: ").append(((StreamingMessage) res).getLength()).append("\r\n");
+        return endHead(head, keepAlive);
+    }
+    private static StringBuilder startHead(HttpMessage res) {
+        StringBuilder head = new StringBuilder(128);
+        head.append(res.getStartLine()).append("\r\n");
+        for (Map.Entry<String,String> e : res.getHeaderFields().entrySet())
+            if (!e.getKey().equalsIgnoreCase("Connection"))
+                head.append(e.getKey()).append(": ").append(e.getValue()).append("\r\n");
+        return head;
+    }
+    private static StringBuilder endHead(StringBuilder head, boolean keepAlive) {
+        head.append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n");
+        head.append("\r\n");
+        return head;
+    }
+    private static byte[] bytes(StringBuilder head) {
+        return head.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+    private static ByteBuffer encode(StringBuilder head, BufferPool pool) {
+        ByteBuffer buffer = pool.acquire(head.length());
+        for (int i = 0; i < head.length(); i++) {
+            char c = head.charAt(i);
+            buffer.put(c > 0xFF ? (byte) '?' : (byte) c);
+        }
+        buffer.flip();
+        return buffer;
+    }
+    private static long bodyLength(HttpMessage res) {
+        if (res instanceof FileMessage)
+            return ((FileMessage) res).getCount();
+        if (res instanceof BufferMessage)
+            return ((BufferMessage) res).getLength();
+        byte[] body = res.getBody();
+        return body == null ? 0 : body.length;
+    }
+}
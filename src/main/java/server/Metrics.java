@@ -0,0 +1,183 @@
+package server;
+
+import org.httpserver.HttpMessage;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class Metrics {
+    public static final String ContentType = "text/plain; version=0.0.4; charset=utf-8";
+
+    public Metrics() {
+        this.accepted = new LongAdder();
+        this.active = new LongAdder();
+        this.bytesIn = new LongAdder();
+        this.bytesOut = new LongAdder();
+        this.parseErrors = new LongAdder();
+        this.rejected = new LongAdder();
+        this.timeouts = new LongAdder[Phase.values().length];
+        for (int i = 0; i < timeouts.length; i++)
+            timeouts[i] = new LongAdder();
+        this.requests = new ConcurrentHashMap<>();
+        this.latencies = new ConcurrentHashMap<>();
+    }
+    public void connectionOpened() {
+        accepted.increment();
+        active.increment();
+    }
+    public void connectionClosed() {
+        active.decrement();
+    }
+    public void bytesIn(long n) {
+        if (n > 0) bytesIn.add(n);
+    }
+    public void bytesOut(long n) {
+        if (n > 0) bytesOut.add(n);
+    }
+    public void parseError() {
+        parseErrors.increment();
+    }
+    public void rejected() {
+        rejected.increment();
+    }
+    public void timedOut(Phase phase) {
+        timeouts[phase.ordinal()].increment();
+    }
+    public void request(String route, String status, long nanos) {
+        LongAdder count = requests.get(new RequestKey(route, status));
+        if (count == null)
+            count = requests.computeIfAbsent(new RequestKey(route, status), (key) -> new LongAdder());
+        count.increment();
+        Histogram latency = latencies.get(route);
+        if (latency == null)
+            latency = latencies.computeIfAbsent(route, (key) -> new Histogram());
+        latency.record(nanos);
+    }
+    public long acceptedConnections() {
+        return accepted.sum();
+    }
+    public long activeConnections() {
+        return active.sum();
+    }
+    public long bytesIn() {
+        return bytesIn.sum();
+    }
+    public long bytesOut() {
+        return bytesOut.sum();
+    }
+    public long parseErrors() {
+        return parseErrors.sum();
+    }
+    public long rejectedConnections() {
+        return rejected.sum();
+    }
+    public long timeouts(Phase phase) {
+        return timeouts[phase.ordinal()].sum();
+    }
+    public long requests(String route, String status) {
+        LongAdder count = requests.get(new RequestKey(route, status));
+        return count == null ? 0 : count.sum();
+    }
+    public Histogram latency(String route) {
+        return latencies.get(route);
+    }
+    public String render() {
+        StringBuilder out = new StringBuilder(1024);
+        sample(out, "http_connections_accepted_total", "counter", "Connections accepted", accepted.sum());
+        sample(out, "http_connections_active", "gauge", "Connections currently open", active.sum());
+        sample(out, "http_connections_rejected_total", "counter", "Connections turned away with 503", rejected.sum());
+        sample(out, "http_received_bytes_total", "counter", "Bytes read from clients", bytesIn.sum());
+        sample(out, "http_sent_bytes_total", "counter", "Bytes written to clients", bytesOut.sum());
+        sample(out, "http_parse_errors_total", "counter", "Requests rejected as malformed", parseErrors.sum());
+        header(out, "http_timeouts_total", "counter", "Connections closed for being too slow, by phase");
+        for (Phase phase : Phase.values())
+            out.append("http_timeouts_total{phase=\"").append(phase.name().toLowerCase(Locale.ROOT)).append("\"} ")
+                    .append(timeouts[phase.ordinal()].sum()).append('\n');
+        header(out, "http_requests_total", "counter", "Requests by route and status");
+        for (Map.Entry<RequestKey,LongAdder> e : new TreeMap<>(requests).entrySet())
+            out.append("http_requests_total{route=\"").append(escape(e.getKey().route))
+                    .append("\",status=\"").append(escape(e.getKey().status)).append("\"} ")
+                    .append(e.getValue().sum()).append('\n');
+        header(out, "http_request_duration_seconds", "histogram", "Handler latency by route");
+        for (Map.Entry<String,Histogram> e : new TreeMap<>(latencies).entrySet()) {
+            String route = escape(e.getKey());
+            long[] cumulative = e.getValue().cumulativeCounts();
+            for (int i = 0; i < cumulative.length; i++)
+                out.append("http_request_duration_seconds_bucket{route=\"").append(route).append("\",le=\"")
+                        .append(i < Histogram.BoundsNanos.length ? seconds(Histogram.BoundsNanos[i]) : "+Inf")
+                        .append("\"} ").append(cumulative[i]).append('\n');
+            out.append("http_request_duration_seconds_sum{route=\"").append(route).append("\"} ")
+                    .append(seconds(e.getValue().sumNanos())).append('\n');
+            out.append("http_request_duration_seconds_count{route=\"").append(route).append("\"} ")
+                    .append(cumulative[cumulative.length - 1]).append('\n');
+        }
+        header(out, "buffer_pool_hits_total", "counter", "Buffers served from the pool");
+        pool(out, "buffer_pool_hits_total", BufferPool.Direct.hits(), BufferPool.Heap.hits());
+        header(out, "buffer_pool_misses_total", "counter", "Buffers the pool had to allocate");
+        pool(out, "buffer_pool_misses_total", BufferPool.Direct.misses(), BufferPool.Heap.misses());
+        return out.toString();
+    }
+    public static String status(HttpMessage res) {
+        String startLine = res == null ? null : res.getStartLine();
+        if (startLine == null) return "500";
+        int from = startLine.indexOf(' ');
+        if (from == -1) return "500";
+        int to = startLine.indexOf(' ', from + 1);
+        return startLine.substring(from + 1, to == -1 ? startLine.length() : to);
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+    private static void sample(StringBuilder out, String name, String type, String help, long value) {
+        header(out, name, type, help);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+    private static void pool(StringBuilder out, String name, long direct, long heap) {
+        out.append(name).append("{pool=\"direct\"} ").append(direct).append('\n');
+        out.append(name).append("{pool=\"heap\"} ").append(heap).append('\n');
+    }
+    private static String seconds(long nanos) {
+        return BigDecimal.valueOf(nanos, 9).stripTrailingZeros().toPlainString();
+    }
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+    private static class RequestKey implements Comparable<RequestKey> {
+        RequestKey(String route, String status) {
+            this.route = route;
+            this.status = status;
+        }
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof RequestKey)) return false;
+            RequestKey other = (RequestKey) o;
+            return route.equals(other.route) && status.equals(other.status);
+        }
+        @Override
+        public int hashCode() {
+            return route.hashCode() * 31 + status.hashCode();
+        }
+        @Override
+        public int compareTo(RequestKey other) {
+            int c = route.compareTo(other.route);
+            return c != 0 ? c : status.compareTo(other.status);
+        }
+        final String route;
+        final String status;
+    }
+    private final LongAdder accepted;
+    private final LongAdder active;
+    private final LongAdder bytesIn;
+    private final LongAdder bytesOut;
+    private final LongAdder parseErrors;
+    private final LongAdder rejected;
+    private final LongAdder[] timeouts;
+    private final Map<RequestKey,LongAdder> requests;
+    private final Map<String,Histogram> latencies;
+}
@@ -0,0 +1,367 @@
+package server;
+
+import org.httpserver.HttpMessage;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+class NioConnection {
+    NioConnection(NioServer server, EventLoop loop, SocketChannel channel, SelectionKey key, String remote) {
+        this.server = server;
+        this.loop = loop;
+        this.channel = channel;
+        this.key = key;
+        this.out = new ArrayDeque<>();
+        this.pooled = new ArrayDeque<>();
+        this.parser = new RequestParser();
+        this.remote = remote;
+        await(Phase.Idle, true);
+    }
+    void onReadable() {
+        if (busy) return;
+        try {
+            if (in == null) in = BufferPool.Heap.acquire(InitialBufferSize);
+            if (!in.hasRemaining()) grow(in.capacity() * 2);
+            int n = channel.read(in);
+            if (n == -1) {
+                close();
+                return;
+            }
+            server.getMetrics().bytesIn(n);
+            process();
+        } catch (IOException e) {close();}
+    }
+    void onWritable() {
+        try {
+            flush();
+        } catch (IOException e) {close();}
+    }
+    void drain() {
+        if (closed || phase != Phase.Idle || served == 0) return;
+        try {
+            if (in == null) in = BufferPool.Heap.acquire(InitialBufferSize);
+            int n = channel.read(in);
+            if (n <= 0) {
+                close();
+                return;
+            }
+            server.getMetrics().bytesIn(n);
+            process();
+        } catch (IOException e) {close();}
+    }
+    void close() {
+        if (closed) return;
+        closed = true;
+        disarm();
+        server.getMetrics().connectionClosed();
+        server.getAdmission().release(remote);
+        closeFile();
+        releaseBuffer();
+        releaseBuffers();
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException ignored) {}
+    }
+    private void process() throws IOException {
+        if (in == null) {
+            await(Phase.Idle, false);
+            return;
+        }
+        HttpMessage req;
+        try {
+            req = parse();
+        } catch (BadMessageException e) {
+            server.getMetrics().parseError();
+            closeAfterWrite = true;
+            out.add(ByteBuffer.wrap(e.getMessage().getBytes()));
+            busy = true;
+            flush();
+            return;
+        }
+        if (req == null) {
+            if (pending == null && in.position() == 0) {
+                BufferPool.Heap.release(in);
+                in = null;
+                await(Phase.Idle, false);
+            } else
+                await(pending == null ? Phase.Header : Phase.Body, false);
+            return;
+        }
+        disarm();
+        busy = true;
+        key.interestOps(0);
+        long start = System.nanoTime();
+        server.getConnectionExecutor().execute(() -> server.apply(req).thenAccept((res) -> {
+            server.logAccess(remote, req, res, System.nanoTime() - start);
+            loop.execute(() -> respond(req, res));
+        }));
+    }
+    private HttpMessage parse() throws BadMessageException {
+        in.flip();
+        try {
+            if (pending == null) {
+                byte[] bytes = in.array();
+                int start = in.position();
+                while (start < in.limit() && (bytes[start] == '\r' || bytes[start] == '\n'))
+                    start++;
+                in.position(start);
+                int end = parser.headEnd(bytes, start, in.limit());
+                if (end == -1) {
+                    if (in.remaining() > MessageReader.MaxHeadLength)
+                        throw new BadMessageException();
+                    return null;
+                }
+                pending = RequestParser.parse(bytes, start, end);
+                chunked = MessageReader.chunked(pending);
+                pendingLength = chunked ? -1 : MessageReader.contentLength(pending);
+                in.position(end);
+                if (chunked) {
+                    if (decoder == null) decoder = new ChunkedDecoder(MessageReader.MaxChunkedBodyLength);
+                    decoder.reset();
+                }
+            }
+            if (chunked) {
+                in.position(decoder.decode(in.array(), in.position(), in.limit()));
+                return decoder.isDone() ? take(decoder.body()) : null;
+            }
+            if (pendingLength == -1) return take(null);
+            if (in.remaining() < pendingLength) return null;
+            byte[] body = new byte[pendingLength];
+            in.get(body);
+            return take(body);
+        } finally {
+            in.compact();
+        }
+    }
+    private HttpMessage take(byte[] body) {
+        HttpMessage req = pending;
+        req.setBody(body);
+        pending = null;
+        return req;
+    }
+    private void respond(HttpMessage req, HttpMessage res) {
+        if (!key.isValid()) {
+            if (res instanceof BufferMessage)
+                ((BufferMessage) res).release();
+            return;
+        }
+        served++;
+        boolean keepAlive = server.keepAlive(req, res, served);
+        closeAfterWrite = !keepAlive;
+        if (res instanceof PrerenderedMessage) {
+            out.add(ByteBuffer.wrap(((PrerenderedMessage) res).head(keepAlive)));
+            out.add(ByteBuffer.wrap(((PrerenderedMessage) res).body()));
+        } else if (res instanceof StreamingMessage) {
+            boolean chunked = ((StreamingMessage) res).chunked(req);
+            enqueue(MessageWriter.streamingHead(res, chunked, keepAlive, BufferPool.Direct));
+            stream((StreamingMessage) res, chunked);
+        } else if (res instanceof BufferMessage) {
+            enqueue(MessageWriter.head(res, keepAlive, BufferPool.Direct));
+            out.add(((BufferMessage) res).buffer());
+            buffered = (BufferMessage) res;
+        } else {
+            enqueue(MessageWriter.head(res, keepAlive, BufferPool.Direct));
+            if (res.getBody() != null)
+                out.add(ByteBuffer.wrap(res.getBody()));
+        }
+        try {
+            if (res instanceof FileMessage)
+                openFile((FileMessage) res);
+            flush();
+        } catch (IOException e) {close();}
+    }
+    private void openFile(FileMessage message) throws IOException {
+        file = message.open();
+        filePosition = message.getPosition();
+        fileRemaining = message.getCount();
+    }
+    private void stream(StreamingMessage res, boolean chunked) {
+        BlockingQueue<ByteBuffer> queue = new ArrayBlockingQueue<>(StreamedChunks);
+        streamed = queue;
+        streamDone = false;
+        OutputStream sink = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+            @Override
+            public void write(byte[] bytes, int off, int len) throws IOException {
+                ByteBuffer buffer = BufferPool.Direct.acquire(len);
+                buffer.put(bytes, off, len).flip();
+                try {
+                    while (!queue.offer(buffer, 100, TimeUnit.MILLISECONDS))
+                        if (!channel.isOpen()) {
+                            BufferPool.Direct.release(buffer);
+                            throw new IOException("Connection closed");
+                        }
+                } catch (InterruptedException e) {
+                    BufferPool.Direct.release(buffer);
+                    throw new InterruptedIOException();
+                }
+                loop.execute(NioConnection.this::resume);
+            }
+        };
+        server.getConnectionExecutor().execute(() -> {
+            try {
+                res.writeTo(new BufferedOutputStream(sink, ChunkedOutputStream.ChunkSize + 16), chunked);
+                streamDone = true;
+                loop.execute(this::resume);
+            } catch (IOException | RuntimeException e) {
+                loop.execute(this::close);
+            } finally {
+                BufferPool.flushThreadCaches();
+            }
+        });
+    }
+    private void resume() {
+        if (streamed == null || !key.isValid()) return;
+        try {
+            flush();
+        } catch (IOException e) {close();}
+    }
+    private void flush() throws IOException {
+        long n = channel.write(out.toArray(new ByteBuffer[0]));
+        written();
+        while (out.isEmpty() && streamed != null) {
+            boolean done = streamDone;
+            if (streamed.drainTo(out) == 0) {
+                if (!done) {
+                    server.getMetrics().bytesOut(n);
+                    disarm();
+                    key.interestOps(0);
+                    return;
+                }
+                streamed = null;
+                break;
+            }
+            pooled.addAll(out);
+            n += channel.write(out.toArray(new ByteBuffer[0]));
+            written();
+        }
+        if (out.isEmpty() && file != null)
+            n += transferFile();
+        server.getMetrics().bytesOut(n);
+        if (!out.isEmpty() || file != null) {
+            await(Phase.Write, n > 0);
+            key.interestOps(SelectionKey.OP_WRITE);
+            return;
+        }
+        disarm();
+        releaseBuffer();
+        if (closeAfterWrite) {
+            close();
+            return;
+        }
+        busy = false;
+        key.interestOps(SelectionKey.OP_READ);
+        process();
+    }
+    private void enqueue(ByteBuffer buffer) {
+        out.add(buffer);
+        pooled.add(buffer);
+    }
+    private void written() {
+        while (!out.isEmpty() && !out.peek().hasRemaining()) {
+            ByteBuffer buffer = out.poll();
+            if (buffer == pooled.peek())
+                BufferPool.Direct.release(pooled.poll());
+        }
+    }
+    private void releaseBuffers() {
+        for (ByteBuffer buffer : pooled)
+            BufferPool.Direct.release(buffer);
+        pooled.clear();
+        out.clear();
+        BlockingQueue<ByteBuffer> queue = streamed;
+        ByteBuffer buffer;
+        while (queue != null && (buffer = queue.poll()) != null)
+            BufferPool.Direct.release(buffer);
+        BufferPool.Heap.release(in);
+        in = null;
+    }
+    private long transferFile() throws IOException {
+        long n = file.transferTo(filePosition, fileRemaining, channel);
+        filePosition += n;
+        fileRemaining -= n;
+        if (fileRemaining > 0 && filePosition < file.size()) return n;
+        closeFile();
+        if (fileRemaining > 0) throw new IOException("File shrank while sending");
+        return n;
+    }
+    private void await(Phase next, boolean restart) {
+        if (phase == next && !restart) return;
+        disarm();
+        phase = next;
+        int millis = server.timeoutMillis(next);
+        if (millis <= 0) return;
+        int armed = generation;
+        timeout = server.timer.schedule(() -> loop.execute(() -> expire(armed)), millis);
+    }
+    private void disarm() {
+        generation++;
+        phase = null;
+        if (timeout != null) timeout.cancel();
+        timeout = null;
+    }
+    private void expire(int armed) {
+        if (armed != generation || closed) return;
+        server.getMetrics().timedOut(phase);
+        close();
+    }
+    private void closeFile() {
+        try {
+            if (file != null) file.close();
+        } catch (IOException ignored) {}
+        file = null;
+    }
+    private void releaseBuffer() {
+        if (buffered != null) buffered.release();
+        buffered = null;
+    }
+    private void grow(int capacity) {
+        ByteBuffer bigger = BufferPool.Heap.acquire(Math.max(capacity, in.capacity()));
+        in.flip();
+        bigger.put(in);
+        BufferPool.Heap.release(in);
+        in = bigger;
+    }
+    private static final int InitialBufferSize = 4096;
+    private static final int StreamedChunks = 16;
+    private final NioServer server;
+    private final EventLoop loop;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final ArrayDeque<ByteBuffer> out;
+    private final ArrayDeque<ByteBuffer> pooled;
+    private final RequestParser parser;
+    private final String remote;
+    private ByteBuffer in;
+    private FileChannel file;
+    private long filePosition;
+    private long fileRemaining;
+    private BufferMessage buffered;
+    private HttpMessage pending;
+    private int pendingLength;
+    private boolean chunked;
+    private ChunkedDecoder decoder;
+    private BlockingQueue<ByteBuffer> streamed;
+    private volatile boolean streamDone;
+    private int served;
+    private boolean busy;
+    private boolean closeAfterWrite;
+    private boolean closed;
+    private Phase phase;
+    private WheelTimer.Timeout timeout;
+    private int generation;
+}
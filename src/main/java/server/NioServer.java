@@ -0,0 +1,92 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+public class NioServer extends AbstractServer {
+    public NioServer(InetSocketAddress address) throws IOException {
+        this(address, Runtime.getRuntime().availableProcessors());
+    }
+    public NioServer(InetSocketAddress address, int eventLoops) throws IOException {
+        super(address);
+        this.loops = new EventLoop[eventLoops];
+    }
+    @Override
+    public void initialize() {
+        try {
+            channel = ServerSocketChannel.open();
+            channel.bind(address, acceptBacklog);
+            printStream.println(listeningString());
+        } catch (Exception e) {
+            printStream.println(e.getMessage());
+        }
+    }
+    @Override
+    public void run() {
+        for (int i = 0; i < loops.length; i++) {
+            try {
+                loops[i] = new EventLoop(this);
+            } catch (IOException e) {
+                printStream.println(e.getMessage());
+                return;
+            }
+            new Thread(loops[i], "event-loop-" + i).start();
+        }
+        new Thread(()->{
+            while (isRunning()) handleConnection();
+        }, "acceptor").start();
+    }
+    @Override
+    public void handleConnection() {
+        try {
+            SocketChannel client = channel.accept();
+            String remote = client(client.socket());
+            if (admit(client.socket(), remote))
+                loops[next++ % loops.length].register(client, remote);
+        } catch (IOException ignored) {}
+    }
+    @Override
+    public Socket listen() {
+        return null;
+    }
+    @Override
+    public void stop() {
+        super.stop();
+        stopAccepting();
+    }
+    @Override
+    protected void stopAccepting() {
+        try {
+            if (channel != null) channel.close();
+        } catch (IOException ignored) {}
+        for (EventLoop loop : loops)
+            if (loop != null) loop.drain();
+    }
+    @Override
+    public boolean isBound() {
+        return channel != null && channel.socket().isBound();
+    }
+    @Override
+    public boolean isRunning() {
+        return isBound() && channel.isOpen();
+    }
+    @Override
+    public SocketAddress socketAddress() {
+        return channel == null ? null : channel.socket().getLocalSocketAddress();
+    }
+    @Override
+    public ServerSocket getServer() {
+        return channel == null ? super.getServer() : channel.socket();
+    }
+    public int eventLoopCount() {
+        return loops.length;
+    }
+    private final EventLoop[] loops;
+    private ServerSocketChannel channel;
+    private int next;
+}
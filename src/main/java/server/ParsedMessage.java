@@ -0,0 +1,72 @@
+package server;
+
+import org.httpserver.HttpMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+public class ParsedMessage extends HttpMessage {
+    ParsedMessage(byte[] head, int[] offsets, int headerCount) {
+        super();
+        this.head = head;
+        this.offsets = offsets;
+        this.headerCount = headerCount;
+    }
+    public String header(String name) {
+        if (materialized) return Headers.get(super.getHeaderFields(), name);
+        for (int i = 0; i < headerCount; i++) {
+            int nameStart = offsets[i * 4];
+            int nameEnd = offsets[i * 4 + 1];
+            if (equalsIgnoreCase(name, nameStart, nameEnd))
+                return string(offsets[i * 4 + 2], offsets[i * 4 + 3]);
+        }
+        return null;
+    }
+    public int headerCount() {
+        return materialized ? super.getHeaderFields().size() : headerCount;
+    }
+    @Override
+    public HashMap<String, String> getHeaderFields() {
+        materialize();
+        return super.getHeaderFields();
+    }
+    @Override
+    public void putHeader(String name, String value) {
+        materialize();
+        super.putHeader(name, value);
+    }
+    @Override
+    public String getStartLineAndHeaders() {
+        materialize();
+        return super.getStartLineAndHeaders();
+    }
+    @Override
+    public String toString() {
+        materialize();
+        return super.toString();
+    }
+    private void materialize() {
+        if (materialized) return;
+        HashMap<String,String> fields = super.getHeaderFields();
+        for (int i = 0; i < headerCount; i++)
+            fields.put(string(offsets[i * 4], offsets[i * 4 + 1]), string(offsets[i * 4 + 2], offsets[i * 4 + 3]));
+        materialized = true;
+    }
+    private boolean equalsIgnoreCase(String name, int start, int end) {
+        if (end - start != name.length()) return false;
+        for (int i = 0; i < name.length(); i++) {
+            int a = head[start + i];
+            int b = name.charAt(i);
+            if (a != b && Character.toLowerCase(a) != Character.toLowerCase(b))
+                return false;
+        }
+        return true;
+    }
+    private String string(int start, int end) {
+        return new String(head, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+    private final byte[] head;
+    private final int[] offsets;
+    private final int headerCount;
+    private boolean materialized;
+}
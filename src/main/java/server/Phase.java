@@ -0,0 +1,5 @@
+package server;
+
+public enum Phase {
+    Idle, Header, Body, Write
+}
@@ -0,0 +1,54 @@
+package server;
+
+import org.httpserver.HttpMessage;
+
+import java.util.Arrays;
+import java.util.Map;
+
+public class PrerenderedMessage extends HttpMessage {
+    public PrerenderedMessage(HttpMessage message) {
+        super();
+        setStartLine(message.getStartLine());
+        for (Map.Entry<String,String> e : message.getHeaderFields().entrySet())
+            putHeader(e.getKey(), e.getValue());
+        this.body = message.getBody() == null ? new byte[0] : message.getBody();
+        this.keepAlive = MessageWriter.head(message, body.length, true);
+        this.close = MessageWriter.head(message, body.length, false);
+        this.sealed = true;
+    }
+    public byte[] head(boolean keepAlive) {
+        return keepAlive ? this.keepAlive : close;
+    }
+    public byte[] body() {
+        return body;
+    }
+    public int length(boolean keepAlive) {
+        return head(keepAlive).length + body.length;
+    }
+    @Override
+    public byte[] getBody() {
+        return Arrays.copyOf(body, body.length);
+    }
+    @Override
+    public void setBody(byte[] body) {
+        throw new UnsupportedOperationException("Prerendered messages are immutable");
+    }
+    @Override
+    public void setBody(String body) {
+        throw new UnsupportedOperationException("Prerendered messages are immutable");
+    }
+    @Override
+    public void setStartLine(String startLine) {
+        if (sealed) throw new UnsupportedOperationException("Prerendered messages are immutable");
+        super.setStartLine(startLine);
+    }
+    @Override
+    public void putHeader(String name, String value) {
+        if (sealed) throw new UnsupportedOperationException("Prerendered messages are immutable");
+        super.putHeader(name, value);
+    }
+    private final byte[] keepAlive;
+    private final byte[] close;
+    private final byte[] body;
+    private final boolean sealed;
+}
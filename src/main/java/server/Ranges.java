@@ -0,0 +1,205 @@
+package server;
+
+import org.httpserver.HttpMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class Ranges {
+    public static final String PartialContent = "HTTP/1.1 206 Partial Content";
+    public static final String RangeNotSatisfiable = "HTTP/1.1 416 Range Not Satisfiable";
+    public static final int MaxRanges = 16;
+
+    public static List<long[]> parse(String header, long size) {
+        if (header == null) return null;
+        String spec = header.trim();
+        if (!spec.regionMatches(true, 0, "bytes=", 0, 6)) return null;
+        String[] parts = spec.substring(6).split(",");
+        if (parts.length > MaxRanges) return null;
+        List<long[]> ranges = new ArrayList<>();
+        for (String part : parts) {
+            String range = part.trim();
+            int dash = range.indexOf('-');
+            if (dash == -1) return null;
+            long first;
+            long last;
+            try {
+                if (dash == 0) {
+                    long suffix = Long.parseLong(range.substring(1));
+                    if (suffix == 0) continue;
+                    first = Math.max(0, size - suffix);
+                    last = size - 1;
+                } else {
+                    first = Long.parseLong(range.substring(0, dash));
+                    last = dash == range.length() - 1 ? Long.MAX_VALUE : Long.parseLong(range.substring(dash + 1));
+                    if (last < first) return null;
+                    last = Math.min(last, size - 1);
+                }
+            } catch (NumberFormatException e) {return null;}
+            if (first < 0) return null;
+            if (first < size)
+                ranges.add(new long[]{first, last});
+        }
+        return coalesce(ranges);
+    }
+    public static boolean ifRangeMatches(HttpMessage req, HttpMessage res) {
+        String ifRange = Headers.get(req, "If-Range");
+        if (ifRange == null) return true;
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/"))
+            return !ifRange.startsWith("W/") && ifRange.equals(Headers.get(res, "ETag"));
+        return ifRange.equals(Headers.get(res, "Last-Modified"));
+    }
+    public static HttpMessage unsatisfiable(HttpMessage res, long size) {
+        HttpMessage unsatisfiable = new HttpMessage();
+        unsatisfiable.setStartLine(RangeNotSatisfiable);
+        unsatisfiable.putHeader("Content-Range", "bytes */" + size);
+        unsatisfiable.putHeader("Content-Length", "0");
+        copyHeaders(res, unsatisfiable);
+        unsatisfiable.setBody(new byte[0]);
+        return unsatisfiable;
+    }
+    public static HttpMessage partial(HttpMessage res, List<long[]> ranges, byte[] data) {
+        return partial(res, ranges, ByteBuffer.wrap(data));
+    }
+    public static HttpMessage partial(HttpMessage res, List<long[]> ranges, ByteBuffer data) {
+        String contentType = Headers.get(res, "Content-Type");
+        int size = data.remaining();
+        if (ranges.size() == 1) {
+            long[] range = ranges.get(0);
+            HttpMessage partial = single(res, range, size);
+            partial.setBody(slice(data, range));
+            return partial;
+        }
+        String boundary = boundary();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (long[] range : ranges) {
+            byte[] head = partHead(boundary, contentType, range, size);
+            body.write(head, 0, head.length);
+            byte[] slice = slice(data, range);
+            body.write(slice, 0, slice.length);
+        }
+        byte[] tail = tail(boundary);
+        body.write(tail, 0, tail.length);
+        HttpMessage partial = multipart(res, boundary, body.size());
+        partial.setBody(body.toByteArray());
+        return partial;
+    }
+    public static HttpMessage partial(FileMessage res, List<long[]> ranges) {
+        long size = res.getCount();
+        String contentType = Headers.get(res, "Content-Type");
+        if (ranges.size() == 1) {
+            long[] range = ranges.get(0);
+            FileMessage partial = new FileMessage(res.getPath(), res.getPosition() + range[0], range[1] - range[0] + 1);
+            partial.setStartLine(PartialContent);
+            partial.putHeader("Content-Range", contentRange(range, size));
+            partial.putHeader("Content-Length", String.valueOf(partial.getCount()));
+            if (contentType != null) partial.putHeader("Content-Type", contentType);
+            copyHeaders(res, partial);
+            return partial;
+        }
+        String boundary = boundary();
+        long length = tail(boundary).length;
+        for (long[] range : ranges)
+            length += partHead(boundary, contentType, range, size).length + range[1] - range[0] + 1;
+        StreamingMessage partial = new StreamingMessage((out) -> {
+            ByteBuffer buffer = BufferPool.Heap.acquire(ChunkedOutputStream.ChunkSize);
+            try (FileChannel file = res.open()) {
+                for (long[] range : ranges) {
+                    out.write(partHead(boundary, contentType, range, size));
+                    long position = res.getPosition() + range[0];
+                    long end = res.getPosition() + range[1] + 1;
+                    while (position < end) {
+                        buffer.clear().limit((int) Math.min(ChunkedOutputStream.ChunkSize, end - position));
+                        int n = file.read(buffer, position);
+                        if (n == -1) throw new IOException("File shrank while sending " + res.getPath());
+                        out.write(buffer.array(), 0, n);
+                        position += n;
+                    }
+                }
+            } finally {
+                BufferPool.Heap.release(buffer);
+            }
+            out.write(tail(boundary));
+        }, length);
+        partial.setStartLine(PartialContent);
+        partial.putHeader("Content-Type", "multipart/byteranges; boundary=" + boundary);
+        copyHeaders(res, partial);
+        return partial;
+    }
+
+    private static HttpMessage single(HttpMessage res, long[] range, long size) {
+        HttpMessage partial = new HttpMessage();
+        partial.setStartLine(PartialContent);
+        partial.putHeader("Content-Range", contentRange(range, size));
+        partial.putHeader("Content-Length", String.valueOf(range[1] - range[0] + 1));
+        String contentType = Headers.get(res, "Content-Type");
+        if (contentType != null) partial.putHeader("Content-Type", contentType);
+        copyHeaders(res, partial);
+        return partial;
+    }
+    private static byte[] slice(ByteBuffer data, long[] range) {
+        ByteBuffer source = data.duplicate();
+        source.position(source.position() + (int) range[0]);
+        byte[] slice = new byte[(int) (range[1] - range[0] + 1)];
+        source.get(slice);
+        return slice;
+    }
+    private static HttpMessage multipart(HttpMessage res, String boundary, long length) {
+        HttpMessage partial = new HttpMessage();
+        partial.setStartLine(PartialContent);
+        partial.putHeader("Content-Type", "multipart/byteranges; boundary=" + boundary);
+        partial.putHeader("Content-Length", String.valueOf(length));
+        copyHeaders(res, partial);
+        return partial;
+    }
+    private static void copyHeaders(HttpMessage from, HttpMessage to) {
+        for (Map.Entry<String,String> e : from.getHeaderFields().entrySet()) {
+            String name = e.getKey();
+            if (!name.equalsIgnoreCase("Content-Length") && !name.equalsIgnoreCase("Content-Type")
+                    && !name.equalsIgnoreCase("Content-Range"))
+                to.putHeader(name, e.getValue());
+        }
+    }
+    private static List<long[]> coalesce(List<long[]> ranges) {
+        if (ranges.size() < 2) return ranges;
+        ranges.sort(Comparator.comparingLong((long[] r) -> r[0]));
+        List<long[]> merged = new ArrayList<>();
+        long[] current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            long[] next = ranges.get(i);
+            if (next[0] <= current[1] + 1)
+                current = new long[]{current[0], Math.max(current[1], next[1])};
+            else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+    private static String contentRange(long[] range, long size) {
+        return "bytes " + range[0] + "-" + range[1] + "/" + size;
+    }
+    private static byte[] partHead(String boundary, String contentType, long[] range, long size) {
+        StringBuilder head = new StringBuilder("\r\n--").append(boundary).append("\r\n");
+        if (contentType != null)
+            head.append("Content-Type: ").append(contentType).append("\r\n");
+        head.append("Content-Range: ").append(contentRange(range, size)).append("\r\n\r\n");
+        return head.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+    private static byte[] tail(String boundary) {
+        return ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    }
+    private static String boundary() {
+        return Long.toHexString(ThreadLocalRandom.current().nextLong() | Long.MIN_VALUE);
+    }
+}
@@ -0,0 +1,90 @@
+package server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class RequestParser {
+    public int headEnd(byte[] bytes, int from, int to) {
+        for (int i = from + scanned; i < to; i++) {
+            byte b = bytes[i];
+            if (b == '\n') {
+                if (lineLength == 0) {
+                    reset();
+                    return i + 1;
+                }
+                lineLength = 0;
+            } else if (b != '\r')
+                lineLength++;
+        }
+        scanned = to - from;
+        return -1;
+    }
+    public void reset() {
+        scanned = 0;
+        lineLength = 0;
+    }
+    public static ParsedMessage parse(byte[] bytes, int from, int to) throws BadMessageException {
+        byte[] head = Arrays.copyOfRange(bytes, from, to);
+        int[] offsets = new int[32];
+        int headers = 0;
+        int lineEnd = lineEnd(head, 0);
+        if (lineEnd == -1) throw new BadMessageException();
+        String startLine = new String(head, 0, trimCR(head, 0, lineEnd), StandardCharsets.ISO_8859_1);
+        int pos = lineEnd + 1;
+        while (pos < head.length) {
+            lineEnd = lineEnd(head, pos);
+            if (lineEnd == -1) throw new BadMessageException();
+            int end = trimCR(head, pos, lineEnd);
+            if (end == pos) break;
+            if (isWhitespace(head[pos])) throw new BadMessageException();
+            int colon = indexOf(head, (byte) ':', pos, end);
+            if (colon > pos) {
+                if (isWhitespace(head[colon - 1])) throw new BadMessageException();
+                int valueStart = colon + 1;
+                int valueEnd = end;
+                while (valueStart < valueEnd && head[valueStart] <= ' ') valueStart++;
+                while (valueEnd > valueStart && head[valueEnd - 1] <= ' ') valueEnd--;
+                if (headers * 4 == offsets.length) offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                offsets[headers * 4] = pos;
+                offsets[headers * 4 + 1] = colon;
+                offsets[headers * 4 + 2] = valueStart;
+                offsets[headers * 4 + 3] = valueEnd;
+                headers++;
+            }
+            pos = lineEnd + 1;
+        }
+        ParsedMessage message = new ParsedMessage(head, offsets, headers);
+        message.setStartLine(startLine);
+        message.isRequest = !startLine.startsWith("HTTP");
+        if (message.isRequest) {
+            parseMethodAndURI(message, startLine);
+            if (message.header("Host") == null) throw new BadMessageException();
+        }
+        return message;
+    }
+    private static void parseMethodAndURI(ParsedMessage message, String startLine) {
+        int space = startLine.indexOf(' ');
+        if (space != -1)
+            message.setMethod(startLine.substring(0, space));
+        int slash = startLine.indexOf('/');
+        if (slash == -1) return;
+        int end = startLine.indexOf(' ', slash);
+        message.setURI(end == -1 ? startLine.substring(slash + 1) : startLine.substring(slash + 1, end));
+    }
+    private static int lineEnd(byte[] bytes, int from) {
+        return indexOf(bytes, (byte) '\n', from, bytes.length);
+    }
+    private static int trimCR(byte[] bytes, int from, int lineEnd) {
+        return lineEnd > from && bytes[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+    }
+    private static int indexOf(byte[] bytes, byte b, int from, int to) {
+        for (int i = from; i < to; i++)
+            if (bytes[i] == b) return i;
+        return -1;
+    }
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+    private int scanned;
+    private int lineLength;
+}
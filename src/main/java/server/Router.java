@@ -0,0 +1,178 @@
+package server;
+
+import org.httpserver.HttpMessage;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class Router {
+    public interface Handler {
+        CompletableFuture<HttpMessage> handle(HttpMessage req, Map<String,String> params);
+    }
+    public static class Route {
+        Route(Handlers handlers, Map<String,String> params) {
+            this.handlers = handlers;
+            this.params = params;
+        }
+        public String pattern() {
+            return handlers.pattern;
+        }
+        public Handler handler(String method) {
+            Handler handler = handlers.get(method);
+            return handler != null ? handler : handlers.get(AnyMethod);
+        }
+        public Map<String,String> params() {
+            return params;
+        }
+        public String allow() {
+            return String.join(", ", new TreeSet<>(handlers.keySet()));
+        }
+        private final Handlers handlers;
+        private final Map<String,String> params;
+    }
+    public static final String AnyMethod = "*";
+    public static final String Unmatched = "unmatched";
+
+    public Router() {
+        exact = new ConcurrentHashMap<>();
+        root = new Node();
+        notFound = new PrerenderedMessage(status("HTTP/1.1 404 Not Found", "Not Found"));
+    }
+    public void add(String method, String pattern, Handler handler) {
+        String path = strip(pattern);
+        if (!path.contains(":") && !path.contains("*")) {
+            exact.computeIfAbsent(path, Handlers::new).put(method, handler);
+            return;
+        }
+        Node node = root;
+        for (String segment : segments(path)) {
+            if (segment.equals("*")) {
+                if (node.wildcard == null) node.wildcard = new Handlers(path);
+                node.wildcard.put(method, handler);
+                return;
+            }
+            if (segment.startsWith(":")) {
+                if (node.param == null) node.param = new Node();
+                else if (!node.param.name.equals(segment.substring(1)))
+                    throw new IllegalArgumentException("Conflicting parameter :" + node.param.name + " in " + pattern);
+                node.param.name = segment.substring(1);
+                node = node.param;
+            } else
+                node = node.children.computeIfAbsent(segment, (s) -> new Node());
+        }
+        if (node.handlers == null) node.handlers = new Handlers(path);
+        node.handlers.put(method, handler);
+    }
+    public void add(String method, String pattern, HttpMessage res) {
+        HttpMessage rendered = res instanceof PrerenderedMessage ? res : new PrerenderedMessage(res);
+        CompletableFuture<HttpMessage> future = CompletableFuture.completedFuture(rendered);
+        add(method, pattern, (req, params) -> future);
+    }
+    public Route route(String uri) {
+        String path = strip(uri);
+        Handlers handlers = exact.get(path);
+        if (handlers != null)
+            return new Route(handlers, Collections.emptyMap());
+        Map<String,String> params = new HashMap<>();
+        handlers = match(root, path, 0, params);
+        return handlers == null ? null : new Route(handlers, params);
+    }
+    public HttpMessage notFound() {
+        return notFound;
+    }
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+    public CompletableFuture<HttpMessage> apply(HttpMessage req) {
+        Route route = route(req.getURI());
+        if (metrics == null)
+            return dispatch(req, route);
+        long start = System.nanoTime();
+        String pattern = route == null ? Unmatched : route.pattern();
+        CompletableFuture<HttpMessage> future;
+        try {
+            future = dispatch(req, route);
+        } catch (RuntimeException e) {
+            metrics.request(pattern, "500", System.nanoTime() - start);
+            throw e;
+        }
+        future.whenComplete((res, e) -> metrics.request(pattern, Metrics.status(res), System.nanoTime() - start));
+        return future;
+    }
+
+    private CompletableFuture<HttpMessage> dispatch(HttpMessage req, Route route) {
+        if (route == null)
+            return CompletableFuture.completedFuture(notFound);
+        Handler handler = route.handler(req.getMethod());
+        if (handler == null) {
+            HttpMessage res = status("HTTP/1.1 405 Method Not Allowed", "Method Not Allowed");
+            res.putHeader("Allow", route.allow());
+            return CompletableFuture.completedFuture(res);
+        }
+        return handler.handle(req, route.params());
+    }
+    private static Handlers match(Node node, String path, int from, Map<String,String> params) {
+        if (from > path.length() || (from == path.length() && !path.isEmpty()))
+            return node.handlers;
+        int end = path.indexOf('/', from);
+        if (end == -1) end = path.length();
+        String segment = path.substring(from, end);
+        Node child = node.children.get(segment);
+        if (child != null) {
+            Handlers found = match(child, path, end + 1, params);
+            if (found != null) return found;
+        }
+        if (node.param != null && !segment.isEmpty()) {
+            Handlers found = match(node.param, path, end + 1, params);
+            if (found != null) {
+                params.put(node.param.name, segment);
+                return found;
+            }
+        }
+        if (node.wildcard != null) {
+            params.put("*", path.substring(from));
+            return node.wildcard;
+        }
+        return null;
+    }
+    private static String strip(String uri) {
+        int query = uri.indexOf('?');
+        String path = query == -1 ? uri : uri.substring(0, query);
+        while (path.startsWith("/")) path = path.substring(1);
+        return path;
+    }
+    private static String[] segments(String path) {
+        return path.isEmpty() ? new String[0] : path.split("/", -1);
+    }
+    private static HttpMessage status(String startLine, String body) {
+        HttpMessage res = new HttpMessage();
+        res.setStartLine(startLine);
+        res.putHeader("Content-Length", String.valueOf(body.length()));
+        res.putHeader("Content-Type", "text/plain");
+        res.setBody(body);
+        return res;
+    }
+    private static class Handlers extends LinkedHashMap<String,Handler> {
+        Handlers(String path) {
+            this.pattern = "/" + path;
+        }
+        private static final long serialVersionUID = 1L;
+        final String pattern;
+    }
+    private static class Node {
+        final Map<String,Node> children = new HashMap<>();
+        String name;
+        Node param;
+        Handlers handlers;
+        Handlers wildcard;
+    }
+    private final Map<String,Handlers> exact;
+    private final Node root;
+    private final HttpMessage notFound;
+    private volatile Metrics metrics;
+}
@@ -0,0 +1,59 @@
+package server;
+
+import org.httpserver.HttpMessage;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class StreamingMessage extends HttpMessage {
+    public interface Body {
+        void writeTo(OutputStream out) throws IOException;
+    }
+    public StreamingMessage(Body body) {
+        this(body, -1);
+    }
+    public StreamingMessage(Body body, long length) {
+        super();
+        this.body = body;
+        this.length = length;
+    }
+    public long getLength() {
+        return length;
+    }
+    public boolean chunked(HttpMessage req) {
+        return length < 0 && Headers.acceptsChunked(req);
+    }
+    public boolean delimitedByClose(HttpMessage req) {
+        return length < 0 && !Headers.acceptsChunked(req);
+    }
+    public void writeTo(OutputStream target, boolean chunked) throws IOException {
+        long[] written = {0};
+        OutputStream out = chunked ? new ChunkedOutputStream(target) : new FilterOutputStream(target) {
+            @Override
+            public void write(int b) throws IOException {
+                target.write(b);
+                written[0]++;
+            }
+            @Override
+            public void write(byte[] bytes, int off, int len) throws IOException {
+                target.write(bytes, off, len);
+                written[0] += len;
+            }
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+        body.writeTo(out);
+        if (!chunked && length >= 0 && written[0] != length)
+            throw new IOException("Streamed " + written[0] + " bytes of " + length);
+        out.close();
+    }
+    @Override
+    public byte[] getBody() {
+        return null;
+    }
+    private final Body body;
+    private final long length;
+}
@@ -0,0 +1,122 @@
+package server;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WheelTimer implements Closeable {
+    public static class Timeout {
+        Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+            this.state = new AtomicInteger(Pending);
+        }
+        public boolean cancel() {
+            return state.compareAndSet(Pending, Cancelled);
+        }
+        public boolean isCancelled() {
+            return state.get() == Cancelled;
+        }
+        public boolean isExpired() {
+            return state.get() == Expired;
+        }
+        private void expire() {
+            if (!state.compareAndSet(Pending, Expired)) return;
+            try {
+                task.run();
+            } catch (RuntimeException ignored) {}
+        }
+        private static final int Pending = 0;
+        private static final int Cancelled = 1;
+        private static final int Expired = 2;
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state;
+        private long rounds;
+    }
+    public static final int TickMillis = 100;
+    public static final int WheelSize = 512;
+
+    public WheelTimer() {
+        this(TickMillis, WheelSize);
+    }
+    public WheelTimer(long tickMillis, int wheelSize) {
+        if (Integer.bitCount(wheelSize) != 1)
+            throw new IllegalArgumentException("Wheel size must be a power of two: " + wheelSize);
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.wheel = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++)
+            wheel.add(new ArrayDeque<>());
+        this.added = new ConcurrentLinkedQueue<>();
+        this.start = System.nanoTime();
+        this.thread = new Thread(this::run, "timer-wheel");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    public Timeout schedule(Runnable task, long delayMillis) {
+        Timeout timeout = new Timeout(task, System.nanoTime() - start + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis)));
+        if (closed)
+            timeout.cancel();
+        else
+            added.add(timeout);
+        return timeout;
+    }
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+    }
+
+    private void run() {
+        long tick = 0;
+        try {
+            while (!closed) {
+                long sleep = start + (tick + 1) * tickNanos - System.nanoTime();
+                if (sleep > 0)
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                transfer(tick);
+                expire(wheel.get((int) (tick & (wheel.size() - 1))));
+                tick++;
+            }
+        } catch (InterruptedException ignored) {}
+        Timeout timeout;
+        while ((timeout = added.poll()) != null)
+            timeout.cancel();
+        for (ArrayDeque<Timeout> bucket : wheel)
+            bucket.clear();
+    }
+    private void transfer(long tick) {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.isCancelled()) continue;
+            long ticks = timeout.deadline / tickNanos;
+            timeout.rounds = (ticks - tick) / wheel.size();
+            wheel.get((int) (Math.max(ticks, tick) & (wheel.size() - 1))).add(timeout);
+        }
+    }
+    private static void expire(ArrayDeque<Timeout> bucket) {
+        Iterator<Timeout> timeouts = bucket.iterator();
+        while (timeouts.hasNext()) {
+            Timeout timeout = timeouts.next();
+            if (timeout.isCancelled())
+                timeouts.remove();
+            else if (timeout.rounds <= 0) {
+                timeouts.remove();
+                timeout.expire();
+            } else
+                timeout.rounds--;
+        }
+    }
+    private final long tickNanos;
+    private final List<ArrayDeque<Timeout>> wheel;
+    private final Queue<Timeout> added;
+    private final long start;
+    private final Thread thread;
+    private volatile boolean closed;
+}
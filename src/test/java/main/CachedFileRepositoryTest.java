@@ -0,0 +1,146 @@
+package main;
+
+import org.httpserver.HttpMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import server.PrerenderedMessage;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachedFileRepositoryTest {
+
+    @TempDir
+    Path root;
+
+    private static PrerenderedMessage render(byte[] data) {
+        HttpMessage res = new HttpMessage();
+        res.setStartLine(HttpMessage.HttpOK);
+        res.putHeader("Content-Length",String.valueOf(data.length));
+        res.setBody(data);
+        return new PrerenderedMessage(res);
+    }
+    private static boolean collected(WeakReference<?> reference) throws InterruptedException {
+        for (int i = 0; i < 50 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        return reference.get() == null;
+    }
+
+    @Test
+    void servesSmallFilesFromMemory() throws IOException {
+        Files.write(root.resolve("a.txt"),"hello".getBytes());
+        CachedFileRepository r = new CachedFileRepository(root.toString(),1024,60000);
+
+        assertTrue(r.isFile("a.txt"));
+        assertArrayEquals("hello".getBytes(),r.cachedData("a.txt"));
+        assertEquals("text/plain",r.contentType("a.txt"));
+        assertEquals(5,r.size("a.txt"));
+
+        Files.delete(root.resolve("a.txt"));
+        assertArrayEquals("hello".getBytes(),r.fileData("a.txt"));
+        assertTrue(r.isFile("a.txt"));
+    }
+
+    @Test
+    void answersForDirectoriesAndMissingPaths() throws IOException {
+        Files.createDirectory(root.resolve("dir"));
+        CachedFileRepository r = new CachedFileRepository(root.toString(),1024,60000);
+
+        assertTrue(r.isDirectory("dir"));
+        assertFalse(r.isFile("dir"));
+        assertFalse(r.isFile("missing.txt"));
+        assertFalse(r.isDirectory("missing.txt"));
+        assertNull(r.cachedData("dir"));
+    }
+
+    @Test
+    void revalidatesWhenModifiedTimeChanges() throws IOException {
+        Path a = root.resolve("a.txt");
+        Files.write(a,"hello".getBytes());
+        CachedFileRepository r = new CachedFileRepository(root.toString(),1024,0);
+        assertArrayEquals("hello".getBytes(),r.cachedData("a.txt"));
+
+        Files.write(a,"bye".getBytes());
+        Files.setLastModifiedTime(a,FileTime.fromMillis(Files.getLastModifiedTime(a).toMillis()+5000));
+        assertArrayEquals("bye".getBytes(),r.cachedData("a.txt"));
+        assertEquals(3,r.size("a.txt"));
+    }
+
+    @Test
+    void leavesLargeFilesOnDisk() throws IOException {
+        Files.write(root.resolve("big.bin"),new byte[200]);
+        CachedFileRepository r = new CachedFileRepository(root.toString(),1024,60000);
+
+        assertTrue(r.isFile("big.bin"));
+        assertNull(r.cachedData("big.bin"));
+        assertEquals(200,r.size("big.bin"));
+        assertEquals(200,r.fileData("big.bin").length);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntriesPastCapacity() throws IOException {
+        for (int i = 0; i < 4; i++)
+            Files.write(root.resolve(i + ".txt"),new byte[100]);
+        long capacity = 800;
+        CachedFileRepository r = new CachedFileRepository(root.toString(),capacity,60000);
+
+        r.cachedData("0.txt");
+        r.cachedData("1.txt");
+        r.cachedData("2.txt");
+        r.cachedData("0.txt");
+        r.cachedData("3.txt");
+        assertEquals(3,r.cachedEntries());
+        assertTrue(r.cachedBytes() <= capacity);
+
+        Files.delete(root.resolve("0.txt"));
+        Files.delete(root.resolve("1.txt"));
+        assertNotNull(r.cachedData("0.txt"));
+        assertNull(r.cachedData("1.txt"));
+    }
+
+    @Test
+    void keepsMissesAndMetadataFromEvictingFileData() throws IOException {
+        Files.write(root.resolve("hot.txt"),new byte[100]);
+        Files.createDirectory(root.resolve("dir"));
+        CachedFileRepository r = new CachedFileRepository(root.toString(),1024,60000);
+        assertNotNull(r.cachedData("hot.txt"));
+
+        for (int i = 0; i < 2 * CachedFileRepository.MaxMetadataEntries; i++)
+            assertFalse(r.isFile("missing" + i));
+        assertTrue(r.isDirectory("dir"));
+        assertEquals(1,r.cachedEntries());
+        assertEquals(1,r.metadataEntries());
+        Files.delete(root.resolve("hot.txt"));
+        assertNotNull(r.cachedData("hot.txt"));
+    }
+
+    @Test
+    void dropsRenderedMessagesWithTheirEntries() throws IOException, InterruptedException {
+        Path a = root.resolve("a.txt");
+        Files.write(a,new byte[100]);
+        Files.write(root.resolve("b.txt"),new byte[100]);
+        CachedFileRepository r = new CachedFileRepository(root.toString(),1024,0);
+        WeakReference<PrerenderedMessage> rendered = new WeakReference<>(r.rendered("a.txt",false,CachedFileRepositoryTest::render));
+        assertSame(rendered.get(),r.rendered("a.txt",false,CachedFileRepositoryTest::render));
+        assertTrue(r.cachedBytes() > CachedFileRepository.EntryOverhead + 100);
+
+        Files.write(a,new byte[120]);
+        assertEquals(120,r.rendered("a.txt",false,CachedFileRepositoryTest::render).body().length);
+        assertTrue(collected(rendered));
+
+        rendered = new WeakReference<>(r.rendered("a.txt",true,CachedFileRepositoryTest::render));
+        for (int i = 0; i < 8; i++)
+            Files.write(root.resolve(i + ".txt"),new byte[100]);
+        for (int i = 0; i < 8; i++)
+            r.cachedData(i + ".txt");
+        assertTrue(r.cachedBytes() <= 1024);
+        assertTrue(collected(rendered));
+    }
+}
@@ -0,0 +1,114 @@
+package main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileIndexTest {
+
+    @TempDir
+    Path root;
+
+    private static boolean eventually(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 100 && !condition.getAsBoolean(); i++)
+            Thread.sleep(50);
+        return condition.getAsBoolean();
+    }
+
+    @Test
+    void indexesTreeAtStartup() throws IOException {
+        Files.createDirectories(root.resolve("dir/sub"));
+        Files.write(root.resolve("dir/a.txt"),"hello".getBytes());
+        FileIndex index = new FileIndex(root);
+
+        assertTrue(index.lookup("").isDirectory());
+        assertTrue(index.lookup("dir").isDirectory());
+        assertTrue(index.lookup("dir/sub/").isDirectory());
+        assertTrue(index.lookup("dir/a.txt").isFile());
+        assertEquals(5,index.lookup("dir/a.txt").size());
+        assertEquals(Files.getLastModifiedTime(root.resolve("dir/a.txt")).toMillis(),index.lookup("dir/a.txt").modified());
+        assertEquals(2,index.lookup("dir").children().size());
+        assertSame(FileIndex.Missing,index.lookup("dir/missing.txt"));
+        assertSame(FileIndex.Missing,index.lookup("missing/a.txt"));
+        assertFalse(index.lookup("missing").exists());
+    }
+
+    @Test
+    void refusesToLeaveTheRoot() throws IOException {
+        Files.createDirectories(root.resolve("dir"));
+        Files.write(root.resolve("a.txt"),"hello".getBytes());
+        FileIndex index = new FileIndex(root);
+        assertSame(FileIndex.Missing,index.lookup("../etc"));
+        assertSame(FileIndex.Missing,index.lookup("dir/../../etc"));
+        assertSame(FileIndex.Missing,index.lookup("dir/../a.txt"));
+        assertTrue(index.lookup("./a.txt").isFile());
+        assertTrue(index.lookup("dir/./").isDirectory());
+    }
+
+    @Test
+    void followsChangesThroughWatchService() throws IOException, InterruptedException {
+        FileIndex index = FileIndex.watching(root);
+        try {
+            Files.write(root.resolve("a.txt"),"hello".getBytes());
+            assertTrue(eventually(()->index.lookup("a.txt").isFile()));
+
+            Files.write(root.resolve("a.txt"),"hello world".getBytes());
+            assertTrue(eventually(()->index.lookup("a.txt").size() == 11));
+
+            Files.createDirectories(root.resolve("dir/sub"));
+            Files.write(root.resolve("dir/sub/b.txt"),"b".getBytes());
+            assertTrue(eventually(()->index.lookup("dir/sub/b.txt").isFile()));
+
+            Files.delete(root.resolve("a.txt"));
+            assertTrue(eventually(()->!index.lookup("a.txt").exists()));
+            assertTrue(index.version() > 0);
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    void registersWatchesWhileBuildingTheIndex() throws IOException, InterruptedException {
+        Files.createDirectories(root.resolve("dir/sub"));
+        FileIndex index = FileIndex.watching(root);
+        try {
+            assertEquals(0,index.version());
+            Files.write(root.resolve("dir/sub/c.txt"),"c".getBytes());
+            assertTrue(eventually(()->index.lookup("dir/sub/c.txt").isFile()));
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    void rescansWholeTree() throws IOException {
+        FileIndex index = new FileIndex(root);
+        Files.write(root.resolve("a.txt"),"hello".getBytes());
+        assertFalse(index.lookup("a.txt").exists());
+
+        index.rescan();
+        assertTrue(index.lookup("a.txt").isFile());
+        assertEquals(1,index.version());
+    }
+
+    @Test
+    void backsFileRepositoryLookups() throws IOException {
+        Files.createDirectory(root.resolve("dir"));
+        Files.write(root.resolve("dir/a.txt"),"hello".getBytes());
+        FileRepository repository = new FileRepository(root.toString());
+        repository.setIndex(new FileIndex(root));
+        Files.delete(root.resolve("dir/a.txt"));
+
+        assertTrue(repository.isDirectory("dir"));
+        assertTrue(repository.isFile("dir/a.txt"));
+        assertEquals(5,repository.size("dir/a.txt"));
+        assertArrayEquals(new String[]{root.resolve("dir").resolve("a.txt").toString()},repository.fileNames("dir"));
+        assertFalse(repository.isFile("missing.txt"));
+    }
+}
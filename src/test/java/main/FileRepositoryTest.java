@@ -67,6 +67,22 @@ class FileRepositoryTest {
         }
     }
 
+    @Test
+    void getsFileSize() {
+        FileRepository fileRepository = new FileRepository(".");
+        Path p = FileSystems.getDefault().getPath("./index.html");
+        try (MockedStatic<Files> files = mockStatic(Files.class)) {
+            files.when(()-> Files.size(p)).thenReturn(14L);
+            assertEquals(14,fileRepository.size("index.html"));
+        }
+    }
+
+    @Test
+    void getsSizeOfFakeFile() {
+        FileRepository fileRepository = new FileRepository(".");
+        assertEquals(0,fileRepository.size("not/a/file.txt"));
+    }
+
     @Test
     void checksIfPathIsDirectory() {
         FileRepository fileRepository = new FileRepository(".");
@@ -99,4 +115,15 @@ class FileRepositoryTest {
         assertEquals(fileRepository.getPath("index.html"),p1);
         assertEquals(fileRepository.getPath("pages"),p2);
     }
-}
\ No newline at end of file
+
+    @Test
+    void refusesPathsOutsideTheRoot() {
+        FileRepository fileRepository = new FileRepository("src");
+        assertEquals(FileSystems.getDefault().getPath("src/main"),fileRepository.getPath("/main"));
+        assertEquals(FileSystems.getDefault().getPath("src/main/../test"),fileRepository.getPath("main/../test"));
+        assertNull(fileRepository.getPath("../pom.xml"));
+        assertNull(fileRepository.getPath("main/../../pom.xml"));
+        assertFalse(fileRepository.isFile("../README.md"));
+        assertEquals(0,fileRepository.fileData("../README.md").length);
+    }
+}
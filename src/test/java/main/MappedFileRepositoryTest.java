@@ -0,0 +1,137 @@
+package main;
+
+import org.httpserver.HttpMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.MockedStatic;
+import server.PrerenderedMessage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mockStatic;
+
+class MappedFileRepositoryTest {
+
+    @TempDir
+    Path root;
+
+    private static byte[] bytes(MappedFile mapped) {
+        ByteBuffer buffer = mapped.buffer();
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+
+    @Test
+    void mapsFilesAndReusesMappings() throws IOException {
+        Files.write(root.resolve("a.txt"),"hello".getBytes());
+        MappedFileRepository r = new MappedFileRepository(root.toString(),1024);
+
+        MappedFile first = r.mappedData("a.txt");
+        MappedFile second = r.mappedData("a.txt");
+        assertSame(first,second);
+        assertArrayEquals("hello".getBytes(),bytes(first));
+        assertEquals(3,first.references());
+        assertArrayEquals("hello".getBytes(),r.fileData("a.txt"));
+        first.release();
+        second.release();
+        assertEquals(1,first.references());
+        assertEquals(1,r.mappedFiles());
+        assertEquals(5,r.mappedBytes());
+    }
+
+    @Test
+    void skipsDirectoriesEmptyAndLargeFiles() throws IOException {
+        Files.createDirectory(root.resolve("dir"));
+        Files.write(root.resolve("empty.txt"),new byte[0]);
+        Files.write(root.resolve("big.bin"),new byte[200]);
+        MappedFileRepository r = new MappedFileRepository(root.toString(),1024);
+
+        assertNull(r.mappedData("dir"));
+        assertNull(r.mappedData("empty.txt"));
+        assertNull(r.mappedData("missing.txt"));
+        assertNull(r.mappedData("big.bin"));
+        assertEquals(200,r.fileData("big.bin").length);
+    }
+
+    @Test
+    void remapsWhenFileChanges() throws IOException {
+        Path a = root.resolve("a.txt");
+        Files.write(a,"hello".getBytes());
+        MappedFileRepository r = new MappedFileRepository(root.toString(),1024);
+        MappedFile old = r.mappedData("a.txt");
+
+        Files.write(a,"bye".getBytes());
+        Files.setLastModifiedTime(a,FileTime.fromMillis(Files.getLastModifiedTime(a).toMillis()+5000));
+        MappedFile fresh = r.mappedData("a.txt");
+        assertNotSame(old,fresh);
+        assertArrayEquals("bye".getBytes(),bytes(fresh));
+        assertEquals(1,old.references());
+        old.release();
+        assertTrue(old.isUnmapped());
+        fresh.release();
+    }
+
+    @Test
+    void unmapsEvictedMappingsOnceReleased() throws IOException {
+        for (int i = 0; i < 4; i++)
+            Files.write(root.resolve(i + ".txt"),new byte[100]);
+        MappedFileRepository r = new MappedFileRepository(root.toString(),800,2);
+
+        MappedFile held = r.mappedData("0.txt");
+        r.mappedData("1.txt").release();
+        r.mappedData("2.txt").release();
+        assertEquals(2,r.mappedFiles());
+        assertEquals(200,r.mappedBytes());
+        assertEquals(1,held.references());
+        held.release();
+        assertTrue(held.isUnmapped());
+        assertFalse(held.retain());
+
+        r.close();
+        assertEquals(0,r.mappedFiles());
+    }
+
+    @Test
+    void keepsGzippedRenderingsOfMappedTextFiles() throws IOException {
+        Files.write(root.resolve("a.txt"),new byte[300]);
+        Files.write(root.resolve("b.bin"),new byte[300]);
+        MappedFileRepository r = new MappedFileRepository(root.toString(),4096);
+        AtomicInteger renders = new AtomicInteger();
+        Function<byte[],PrerenderedMessage> render = (data)-> {
+            renders.incrementAndGet();
+            HttpMessage res = new HttpMessage();
+            res.setStartLine(HttpMessage.HttpOK);
+            res.setBody(data);
+            return new PrerenderedMessage(res);
+        };
+
+        assertNull(r.rendered("a.txt",false,render));
+        assertNull(r.rendered("b.bin",true,render));
+        PrerenderedMessage gzipped = r.rendered("a.txt",true,render);
+        assertEquals(300,gzipped.body().length);
+        assertSame(gzipped,r.rendered("a.txt",true,render));
+        assertEquals(1,renders.get());
+        MappedFile mapped = r.mappedData("a.txt");
+        assertEquals(2,mapped.references());
+        mapped.release();
+    }
+
+    @Test
+    void cachesContentTypes() throws IOException {
+        Files.write(root.resolve("a.txt"),"hello".getBytes());
+        MappedFileRepository r = new MappedFileRepository(root.toString(),1024);
+        assertEquals("text/plain",r.contentType("a.txt"));
+        try (MockedStatic<Files> files = mockStatic(Files.class)) {
+            assertEquals("text/plain",r.contentType("a.txt"));
+            files.verifyNoInteractions();
+        }
+    }
+}
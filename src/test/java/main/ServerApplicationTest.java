@@ -4,16 +4,34 @@ import commandparser.BadUsageException;
 import org.httpserver.BadRequestException;
 import org.httpserver.HttpMessage;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mockito;
+import server.AbstractServer;
+import server.BadMessageException;
+import server.BlockingServer;
+import server.BufferMessage;
+import server.MessageReader;
+import server.NioServer;
 
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -33,6 +51,75 @@ class ServerApplicationTest {
         assertEquals("-r <rootDirectory>",s.commandParser.getUsage("-r"));
         assertEquals("127.0.0.1",s.commandParser.getString("-h"));
         assertEquals("-h <hostname>",s.commandParser.getUsage("-h"));
+        assertEquals("threads",s.commandParser.getString("-x"));
+        assertEquals("-x <threads|pool:N|virtual>",s.commandParser.getUsage("-x"));
+        assertEquals(100,s.commandParser.getInt("-k"));
+        assertEquals("-k <maxRequestsPerConnection>",s.commandParser.getUsage("-k"));
+        assertEquals("blocking",s.commandParser.getString("-e"));
+        assertEquals("-e <nio|blocking>",s.commandParser.getUsage("-e"));
+        assertEquals(32,s.commandParser.getInt("-c"));
+        assertEquals("-c <cacheMegabytes>",s.commandParser.getUsage("-c"));
+        assertEquals(0,s.commandParser.getInt("-a"));
+        assertEquals("-a <cacheMaxAgeSeconds>",s.commandParser.getUsage("-a"));
+        assertEquals("read",s.commandParser.getString("-m"));
+        assertEquals("-m <read|mmap>",s.commandParser.getUsage("-m"));
+        assertEquals("on",s.commandParser.getString("-n"));
+        assertEquals("-n <on|off>",s.commandParser.getUsage("-n"));
+        assertEquals(0,s.commandParser.getInt("-s"));
+        assertEquals("-s <sendBufferBytes>",s.commandParser.getUsage("-s"));
+        assertEquals("",s.commandParser.getString("-l"));
+        assertEquals("-l <accessLogFile>",s.commandParser.getUsage("-l"));
+        assertEquals("drop",s.commandParser.getString("-o"));
+        assertEquals("-o <drop|block>",s.commandParser.getUsage("-o"));
+        assertEquals(1000,s.commandParser.getInt("-f"));
+        assertEquals("-f <accessLogFlushMillis>",s.commandParser.getUsage("-f"));
+        assertEquals(0,s.commandParser.getInt("-q"));
+        assertEquals("-q <maxConnections>",s.commandParser.getUsage("-q"));
+        assertEquals(0,s.commandParser.getInt("-i"));
+        assertEquals("-i <maxConnectionsPerClient>",s.commandParser.getUsage("-i"));
+        assertEquals(50,s.commandParser.getInt("-b"));
+        assertEquals("-b <acceptBacklog>",s.commandParser.getUsage("-b"));
+        assertEquals(1,s.commandParser.getInt("-y"));
+        assertEquals("-y <retryAfterSeconds>",s.commandParser.getUsage("-y"));
+        assertEquals(5000,s.commandParser.getInt("-u"));
+        assertEquals("-u <idleTimeoutMillis>",s.commandParser.getUsage("-u"));
+        assertEquals(10000,s.commandParser.getInt("-t"));
+        assertEquals("-t <headerTimeoutMillis>",s.commandParser.getUsage("-t"));
+        assertEquals(30000,s.commandParser.getInt("-d"));
+        assertEquals("-d <bodyTimeoutMillis>",s.commandParser.getUsage("-d"));
+        assertEquals(30000,s.commandParser.getInt("-w"));
+        assertEquals("-w <writeTimeoutMillis>",s.commandParser.getUsage("-w"));
+        assertEquals(30000,s.commandParser.getInt("-g"));
+        assertEquals("-g <drainTimeoutMillis>",s.commandParser.getUsage("-g"));
+    }
+
+    @Test
+    void choosesConnectionExecutor() throws IOException, BadUsageException {
+        PrintStream p = new PrintStream(new ByteArrayOutputStream());
+        ServerApplication s = new ServerApplication(new String[]{"-p","8103","-x","pool:4"},p);
+        assertTrue(((BlockingServer)s.getServer()).getConnectionExecutor() instanceof ThreadPoolExecutor);
+        s.getServer().stop();
+
+        assertThrows(BadUsageException.class,()->
+                new ServerApplication(new String[]{"-p","8104","-x","fibers"},p));
+    }
+
+    @Test
+    void choosesEngine() throws IOException, BadUsageException, BadRequestException {
+        PrintStream p = new PrintStream(new ByteArrayOutputStream());
+        ServerApplication s = new ServerApplication(new String[]{"-p","8105","-e","nio"},p);
+        assertTrue(s.getServer() instanceof NioServer);
+        s.run();
+
+        Socket socket1 = new Socket();
+        socket1.connect(s.getServer().socketAddress());
+        socket1.getOutputStream().write("GET /resources/test.txt HTTP/1.1\r\nHost: me\r\n\r\n".getBytes());
+        HttpMessage m = new HttpMessage(socket1.getInputStream());
+        assertEquals("Hello",new String(m.getBody()));
+        s.getServer().stop();
+
+        assertThrows(BadUsageException.class,()->
+                new ServerApplication(new String[]{"-p","8106","-e","epoll"},p));
     }
 
     @Test
@@ -50,6 +137,25 @@ class ServerApplicationTest {
         assertEquals("<h1>Welcome</h1><p>This is an http server</p>",new String(m.getBody()));
     }
 
+    @Test
+    void respondsWithPrerenderedMessage() throws IOException, BadUsageException, BadRequestException {
+        PrintStream p = new PrintStream(new ByteArrayOutputStream());
+        ServerApplication s = new ServerApplication(new String[]{"-p","8108"},p);
+        HttpMessage res = new HttpMessage("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\n\r\n");
+        res.setBody("static");
+        s.prerender("static",res);
+        s.run();
+
+        Socket socket1 = new Socket();
+        socket1.connect(s.getServer().socketAddress());
+        socket1.getOutputStream().write("GET /static HTTP/1.1\r\nHost: me\r\n\r\n".getBytes());
+
+        HttpMessage m = new HttpMessage(socket1.getInputStream());
+        assertEquals("HTTP/1.1 200 OK",m.getStartLine());
+        assertEquals("text/plain",m.getHeaderFields().get("Content-Type"));
+        assertEquals("static",new String(m.getBody()));
+    }
+
     @Test
     void respondsWithPing() throws BadUsageException, IOException, BadRequestException {
         PrintStream p = new PrintStream(new ByteArrayOutputStream());
@@ -66,6 +172,338 @@ class ServerApplicationTest {
         assertEquals(time,new String(m.getBody()));
     }
 
+    @Test
+    void holdsManyPingsOnFewThreads() throws BadUsageException, IOException, BadRequestException {
+        PrintStream p = new PrintStream(new ByteArrayOutputStream());
+        ServerApplication s = new ServerApplication(new String[]{"-p","8109","-e","nio","-x","pool:2"},p);
+        s.run();
+
+        Instant start = Instant.now();
+        List<Socket> sockets = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Socket socket = new Socket();
+            socket.connect(s.getServer().socketAddress());
+            socket.getOutputStream().write("GET /ping HTTP/1.1\r\nHost: me\r\n\r\n".getBytes());
+            sockets.add(socket);
+        }
+        for (Socket socket : sockets)
+            assertEquals("HTTP/1.1 200 OK",new HttpMessage(socket.getInputStream()).getStartLine());
+        assertTrue(Duration.between(start,Instant.now()).getSeconds() < 3);
+        s.getServer().stop();
+    }
+
+    @Test
+    void respondsNotFoundAndMethodNotAllowed() throws BadUsageException, IOException, BadRequestException {
+        PrintStream p = new PrintStream(new ByteArrayOutputStream());
+        ServerApplication s = new ServerApplication(new String[]{"-p","8080"},p);
+
+        HttpMessage missing = s.respond(new HttpMessage("GET /no/such/file HTTP/1.1\r\nHost: me\r\n\r\n"));
+        assertEquals("HTTP/1.1 404 Not Found",missing.getStartLine());
+        HttpMessage put = s.respond(new HttpMessage("PUT /guess HTTP/1.1\r\nHost: me\r\n\r\n"));
+        assertEquals("HTTP/1.1 405 Method Not Allowed",put.getStartLine());
+        assertEquals("GET, POST",put.getHeaderFields().get("Allow"));
+        s.getServer().stop();
+    }
+
+    @Test
+    void cachesRenderedListingsUntilDirectoryChanges(@TempDir Path root) throws BadUsageException, IOException, BadRequestException, InterruptedException {
+        Files.write(root.resolve("a.txt"),"a".getBytes());
+        PrintStream p = new PrintStream(new ByteArrayOutputStream());
+        ServerApplication s = new ServerApplication(new String[]{"-p","8079","-r",root.toString()},p);
+        HttpMessage req = new HttpMessage("GET / HTTP/1.1\r\nHost: me\r\n\r\n");
+
+        HttpMessage first = s.respond(req);
+        String body = "<a href=\"/a.txt\">/a.txt</a><br>";
+        assertEquals(body,new String(first.getBody(),StandardCharsets.UTF_8));
+        assertEquals(String.valueOf(body.getBytes(StandardCharsets.UTF_8).length),first.getHeaderFields().get("Content-Length"));
+        assertSame(first,s.respond(req));
+
+        Files.write(root.resolve("b.txt"),"b".getBytes());
+        HttpMessage changed = first;
+        for (int i = 0; i < 100 && changed == first; i++) {
+            Thread.sleep(50);
+            changed = s.respond(req);
+        }
+        assertTrue(new String(changed.getBody(),StandardCharsets.UTF_8).contains("/b.txt"));
+        s.getServer().stop();
+    }
+
+    @Test
+    void cachesOneListingPerDirectoryWhateverTheSpelling(@TempDir Path root) throws BadUsageException, IOException, BadRequestException {
+        Files.createDirectory(root.resolve("dir"));
+        Files.write(root.resolve("dir").resolve("a.txt"),"a".getBytes());
+        PrintStream p = new PrintStream(new ByteArrayOutputStream());
+        ServerApplication s = new ServerApplication(new String[]{"-p","8154","-r",root.toString()},p);
+
+        HttpMessage first = s.respond(new HttpMessage("GET /dir HTTP/1.1\r\nHost: me\r\n\r\n"));
+        assertSame(first,s.respond(new HttpMessage("GET /dir/ HTTP/1.1\r\nHost: me\r\n\r\n")));
+        assertSame(first,s.respond(new HttpMessage("GET /dir// HTTP/1.1\r\nHost: me\r\n\r\n")));
+        s.getServer().stop();
+    }
+
+    @Test
+    void streamsLargeDirectoryListings(@TempDir Path root) throws BadUsageException, IOException, BadMessageException {
+        for (int i = 0; i < 1001; i++)
+            Files.createFile(root.resolve("f" + i));
+        PrintStream p = new PrintStream(new ByteArrayOutputStream());
+        ServerApplication s = new ServerApplication(new String[]{"-p","8078","-r",root.toString(),"-e","nio"},p);
+        s.run();
+
+        Socket socket1 = new Socket();
+        socket1.connect(s.getServer().socketAddress());
+        socket1.getOutputStream().write("GET / HTTP/1.1\r\nHost: me\r\n\r\n".getBytes());
+        HttpMessage m = new MessageReader(socket1.getInputStream()).read();
+        assertEquals("chunked",m.getHeaderFields().get("Transfer-Encoding"));
+        String body = new String(m.getBody());
+        assertTrue(body.contains("<a href=\"/f0\">/f0</a><br>"));
+        assertTrue(body.contains("<a href=\"/f1000\">/f1000</a><br>"));
+        s.getServer().stop();
+    }
+
+    @Test
+    void sendsStoredGzipVariantWhenAccepted(@TempDir Path root) throws BadUsageException, IOException, BadRequestException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++)
+            text.append("line ").append(i).append('\n');
+        Files.write(root.resolve("notes.txt"),text.toString().getBytes());
+        PrintStream p = new PrintStream(new ByteArrayOutputStream());
+        ServerApplication s = new ServerApplication(new String[]{"-p","8077","-r",root.toString()},p);
+        HttpMessage gzipReq = new HttpMessage("GET /notes.txt HTTP/1.1\r\nHost: me\r\nAccept-Encoding: gzip\r\n\r\n");
+        HttpMessage plainReq = new HttpMessage("GET /notes.txt HTTP/1.1\r\nHost: me\r\n\r\n");
+
+        HttpMessage gzipped = s.respond(gzipReq);
+        assertEquals("gzip",gzipped.getHeaderFields().get("Content-Encoding"));
+        assertEquals("Accept-Encoding",gzipped.getHeaderFields().get("Vary"));
+        assertTrue(gzipped.getBody().length < text.length());
+        ByteArrayOutputStream unzipped = new ByteArrayOutputStream();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getBody()))) {
+            int b;
+            while ((b = in.read()) != -1) unzipped.write(b);
+        }
+        assertEquals(text.toString(),unzipped.toString());
+        assertSame(gzipped,s.respond(gzipReq));
+
+        HttpMessage plain = s.respond(plainReq);
+        assertNull(plain.getHeaderFields().get("Content-Encoding"));
+        assertEquals("Accept-Encoding",plain.getHeaderFields().get("Vary"));
+        assertEquals(text.toString(),new String(plain.getBody()));
+        s.getServer().stop();
+    }
+
+    @Test
+    void sendsStoredGzipVariantOfMappedFiles(@TempDir Path root) throws BadUsageException, IOException, BadRequestException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++)
+            text.append("line ").append(i).append('\n');
+        Files.write(root.resolve("notes.txt"),text.toString().getBytes());
+        PrintStream p = new PrintStream(new ByteArrayOutputStream());
+        ServerApplication s = new ServerApplication(new String[]{"-p","8163","-r",root.toString(),"-m","mmap"},p);
+        HttpMessage gzipReq = new HttpMessage("GET /notes.txt HTTP/1.1\r\nHost: me\r\nAccept-Encoding: gzip\r\n\r\n");
+        HttpMessage plainReq = new HttpMessage("GET /notes.txt HTTP/1.1\r\nHost: me\r\n\r\n");
+
+        HttpMessage gzipped = s.respond(gzipReq);
+        assertEquals("gzip",gzipped.getHeaderFields().get("Content-Encoding"));
+        ByteArrayOutputStream unzipped = new ByteArrayOutputStream();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getBody()))) {
+            int b;
+            while ((b = in.read()) != -1) unzipped.write(b);
+        }
+        assertEquals(text.toString(),unzipped.toString());
+        assertSame(gzipped,s.respond(gzipReq));
+
+        HttpMessage plain = s.respond(plainReq);
+        assertTrue(plain instanceof BufferMessage);
+        assertNull(plain.getHeaderFields().get("Content-Encoding"));
+        assertEquals("Accept-Encoding",plain.getHeaderFields().get("Vary"));
+        ((BufferMessage) plain).release();
+        s.getServer().stop();
+    }
+
+    @Test
+    void answersConditionalRequestsForFiles() throws BadUsageException, IOException, BadRequestException {
+        PrintStream p = new PrintStream(new ByteArrayOutputStream());
+        ServerApplication s = new ServerApplication(new String[]{"-p","8076","-a","3600"},p);
+        Path pdf = Paths.get("resources/britain.pdf");
+        String lastModified = ServerApplication.formatInstant(Files.getLastModifiedTime(pdf).toInstant());
+
+        HttpMessage full = s.respond(new HttpMessage("GET /resources/britain.pdf HTTP/1.1\r\nHost: me\r\n\r\n"));
+        String etag = full.getHeaderFields().get("ETag");
+        assertEquals("HTTP/1.1 200 OK",full.getStartLine());
+        assertTrue(etag.startsWith("\"" + Long.toHexString(Files.size(pdf)) + "-"));
+        assertEquals(lastModified,full.getHeaderFields().get("Last-Modified"));
+        assertEquals("public, max-age=3600",full.getHeaderFields().get("Cache-Control"));
+
+        HttpMessage byTag = s.respond(new HttpMessage("GET /resources/britain.pdf HTTP/1.1\r\nHost: me\r\nIf-None-Match: " + etag + "\r\n\r\n"));
+        assertEquals("HTTP/1.1 304 Not Modified",byTag.getStartLine());
+        assertEquals(etag,byTag.getHeaderFields().get("ETag"));
+        assertNull(byTag.getBody());
+        HttpMessage byDate = s.respond(new HttpMessage("GET /resources/britain.pdf HTTP/1.1\r\nHost: me\r\nIf-Modified-Since: " + lastModified + "\r\n\r\n"));
+        assertEquals("HTTP/1.1 304 Not Modified",byDate.getStartLine());
+        HttpMessage changed = s.respond(new HttpMessage("GET /resources/test.txt HTTP/1.1\r\nHost: me\r\nIf-None-Match: " + etag + "\r\n\r\n"));
+        assertEquals("HTTP/1.1 200 OK",changed.getStartLine());
+        s.getServer().stop();
+
+        ServerApplication s2 = new ServerApplication(new String[]{"-p","8075"},p);
+        HttpMessage revalidated = s2.respond(new HttpMessage("GET /resources/test.txt HTTP/1.1\r\nHost: me\r\n\r\n"));
+        assertEquals("no-cache",revalidated.getHeaderFields().get("Cache-Control"));
+        s2.getServer().stop();
+    }
+
+    @Test
+    void servesByteRangesOfLargeFiles() throws BadUsageException, IOException, BadMessageException {
+        byte[] pdf = Files.readAllBytes(Paths.get("resources/britain.pdf"));
+        for (String engine : new String[]{"blocking","nio"}) {
+            PrintStream p = new PrintStream(new ByteArrayOutputStream());
+            ServerApplication s = new ServerApplication(new String[]{"-p",engine.equals("nio") ? "8074" : "8073","-e",engine},p);
+            s.run();
+
+            Socket socket1 = new Socket();
+            socket1.connect(s.getServer().socketAddress());
+            socket1.getOutputStream().write(("GET /resources/britain.pdf HTTP/1.1\r\nHost: me\r\nRange: bytes=1000-1999\r\n\r\n" +
+                    "GET /resources/britain.pdf HTTP/1.1\r\nHost: me\r\nRange: bytes=0-3,-4\r\n\r\n" +
+                    "GET /resources/britain.pdf HTTP/1.1\r\nHost: me\r\nRange: bytes=999999999-\r\n\r\n").getBytes());
+            MessageReader reader = new MessageReader(socket1.getInputStream());
+            HttpMessage single = reader.read();
+            assertEquals("HTTP/1.1 206 Partial Content",single.getStartLine());
+            assertEquals("bytes 1000-1999/" + pdf.length,single.getHeaderFields().get("Content-Range"));
+            assertArrayEquals(Arrays.copyOfRange(pdf,1000,2000),single.getBody());
+
+            HttpMessage multi = reader.read();
+            assertTrue(multi.getHeaderFields().get("Content-Type").startsWith("multipart/byteranges"));
+            String body = new String(multi.getBody(),StandardCharsets.ISO_8859_1);
+            assertTrue(body.contains("Content-Range: bytes 0-3/" + pdf.length + "\r\n\r\n%PDF"));
+            assertTrue(body.contains("Content-Range: bytes " + (pdf.length - 4) + "-" + (pdf.length - 1) + "/" + pdf.length));
+
+            HttpMessage unsatisfiable = reader.read();
+            assertEquals("HTTP/1.1 416 Range Not Satisfiable",unsatisfiable.getStartLine());
+            s.getServer().stop();
+        }
+    }
+
+    @Test
+    void servesMemoryMappedFiles() throws BadUsageException, IOException, BadMessageException {
+        byte[] pdf = Files.readAllBytes(Paths.get("resources/britain.pdf"));
+        for (String engine : new String[]{"blocking","nio"}) {
+            PrintStream p = new PrintStream(new ByteArrayOutputStream());
+            ServerApplication s = new ServerApplication(new String[]{"-p",engine.equals("nio") ? "8132" : "8131","-e",engine,"-m","mmap"},p);
+            s.run();
+
+            Socket socket1 = new Socket();
+            socket1.connect(s.getServer().socketAddress());
+            socket1.getOutputStream().write(("GET /resources/britain.pdf HTTP/1.1\r\nHost: me\r\n\r\n" +
+                    "GET /resources/britain.pdf HTTP/1.1\r\nHost: me\r\nRange: bytes=10-19\r\n\r\n" +
+                    "GET /resources/test.txt HTTP/1.1\r\nHost: me\r\n\r\n").getBytes());
+            MessageReader reader = new MessageReader(socket1.getInputStream());
+            HttpMessage full = reader.read();
+            assertEquals("HTTP/1.1 200 OK",full.getStartLine());
+            assertEquals("application/pdf",full.getHeaderFields().get("Content-Type"));
+            assertArrayEquals(pdf,full.getBody());
+
+            HttpMessage partial = reader.read();
+            assertEquals("HTTP/1.1 206 Partial Content",partial.getStartLine());
+            assertArrayEquals(Arrays.copyOfRange(pdf,10,20),partial.getBody());
+
+            assertEquals("Hello",new String(reader.read().getBody()));
+            s.getServer().stop();
+        }
+    }
+
+    @Test
+    void setsSocketOptions() throws BadUsageException, IOException {
+        PrintStream p = new PrintStream(new ByteArrayOutputStream());
+        ServerApplication s = new ServerApplication(new String[]{"-p","8134","-n","off","-s","65536"},p);
+        AbstractServer server = (AbstractServer) s.getServer();
+        assertFalse(server.getTcpNoDelay());
+        assertEquals(65536,server.getSendBufferSize());
+        server.stop();
+        assertThrows(BadUsageException.class,()->new ServerApplication(new String[]{"-p","8135","-n","maybe"},p));
+    }
+
+    @Test
+    void servesMetrics() throws BadUsageException, IOException, BadMessageException {
+        for (String engine : new String[]{"blocking","nio"}) {
+            PrintStream p = new PrintStream(new ByteArrayOutputStream());
+            ServerApplication s = new ServerApplication(new String[]{"-p",engine.equals("nio") ? "8139" : "8138","-e",engine},p);
+            s.run();
+
+            Socket socket1 = new Socket();
+            socket1.connect(s.getServer().socketAddress());
+            socket1.getOutputStream().write(("GET /hello HTTP/1.1\r\nHost: me\r\n\r\n" +
+                    "GET /missing.txt HTTP/1.1\r\nHost: me\r\n\r\n" +
+                    "GET /metrics HTTP/1.1\r\nHost: me\r\n\r\n").getBytes());
+            MessageReader reader = new MessageReader(socket1.getInputStream());
+            reader.read();
+            reader.read();
+            HttpMessage m = reader.read();
+            assertEquals("text/plain; version=0.0.4; charset=utf-8",m.getHeaderFields().get("Content-Type"));
+            String text = new String(m.getBody(),StandardCharsets.UTF_8);
+            assertTrue(text.contains("http_connections_active 1\n"));
+            assertTrue(text.contains("http_requests_total{route=\"/hello\",status=\"200\"} 1\n"));
+            assertTrue(text.contains("http_requests_total{route=\"/*\",status=\"404\"} 1\n"));
+            assertTrue(text.contains("http_request_duration_seconds_count{route=\"/hello\"} 1\n"));
+            assertTrue(s.getServer() instanceof AbstractServer);
+            assertTrue(((AbstractServer) s.getServer()).getMetrics().bytesIn() > 0);
+            assertTrue(((AbstractServer) s.getServer()).getMetrics().bytesOut() > 0);
+            s.getServer().stop();
+        }
+    }
+
+    @Test
+    void writesAccessLog(@TempDir Path logs) throws BadUsageException, IOException, BadMessageException, InterruptedException {
+        for (String engine : new String[]{"blocking","nio"}) {
+            Path file = logs.resolve(engine + ".log");
+            PrintStream p = new PrintStream(new ByteArrayOutputStream());
+            ServerApplication s = new ServerApplication(new String[]{"-p",engine.equals("nio") ? "8141" : "8140","-e",engine,
+                    "-l",file.toString(),"-f","5"},p);
+            s.run();
+
+            Socket socket1 = new Socket();
+            socket1.connect(s.getServer().socketAddress());
+            socket1.getOutputStream().write(("GET /hello HTTP/1.1\r\nHost: me\r\n\r\n" +
+                    "GET /missing.txt HTTP/1.1\r\nHost: me\r\n\r\n").getBytes());
+            MessageReader reader = new MessageReader(socket1.getInputStream());
+            reader.read();
+            reader.read();
+            s.getServer().stop();
+
+            List<String> lines = Files.readAllLines(file);
+            assertEquals(2,lines.size());
+            assertTrue(lines.get(0).startsWith("127.0.0.1 - - ["));
+            assertTrue(lines.get(0).contains("\"GET /hello HTTP/1.1\" 200 "));
+            assertTrue(lines.get(1).contains("\"GET /missing.txt HTTP/1.1\" 404 9 "));
+        }
+    }
+
+    @Test
+    void answersHandlerFailuresWithInternalServerError(@TempDir Path logs) throws BadUsageException, IOException, BadMessageException {
+        for (String engine : new String[]{"blocking","nio"}) {
+            Path file = logs.resolve(engine + ".log");
+            PrintStream p = new PrintStream(new ByteArrayOutputStream());
+            ServerApplication s = new ServerApplication(new String[]{"-p",engine.equals("nio") ? "8161" : "8160","-e",engine,
+                    "-l",file.toString(),"-f","5"},p);
+            s.run();
+
+            Socket socket1 = new Socket();
+            socket1.connect(s.getServer().socketAddress());
+            socket1.getOutputStream().write(("POST /guess HTTP/1.1\r\nHost: me\r\nContent-Length: 5\r\n\r\nhello").getBytes());
+            HttpMessage m = new MessageReader(socket1.getInputStream()).read();
+            assertEquals(AbstractServer.InternalServerError,m.getStartLine());
+            assertEquals("close",m.getHeaderFields().get("Connection"));
+            assertEquals(-1,socket1.getInputStream().read());
+            s.getServer().stop();
+
+            List<String> lines = Files.readAllLines(file);
+            assertEquals(1,lines.size());
+            assertTrue(lines.get(0).contains("\"POST /guess HTTP/1.1\" 500 "));
+        }
+    }
+
+    @Test
+    void rejectsUnknownFileMode() {
+        PrintStream p = new PrintStream(new ByteArrayOutputStream());
+        assertThrows(BadUsageException.class,()->new ServerApplication(new String[]{"-p","8133","-m","direct"},p));
+    }
+
     @Test
     void respondsWithFilesInDirectory() throws BadUsageException, IOException, BadRequestException {
         PrintStream p = new PrintStream(new ByteArrayOutputStream());
@@ -104,6 +542,22 @@ class ServerApplicationTest {
         assertEquals("Hello",new String(m.getBody()));
     }
 
+    @Test
+    void respondsWithLargeBinaryFile() throws IOException, BadMessageException, BadUsageException {
+        PrintStream p = new PrintStream(new ByteArrayOutputStream());
+        ServerApplication s = new ServerApplication(new String[]{"-p","8107"},p);
+        s.run();
+
+        Socket socket1 = new Socket();
+        socket1.connect(s.getServer().socketAddress());
+        socket1.getOutputStream().write("GET /resources/britain.pdf HTTP/1.1\r\nHost: me\r\n\r\n".getBytes());
+
+        HttpMessage m = new MessageReader(socket1.getInputStream()).read();
+        assertEquals("HTTP/1.1 200 OK",m.getStartLine());
+        assertEquals("application/pdf",m.getHeaderFields().get("Content-Type"));
+        assertArrayEquals(Files.readAllBytes(Paths.get("resources/britain.pdf")),m.getBody());
+    }
+
     @Test
     void respondsWithTxtMimeType() throws BadUsageException, IOException, BadRequestException {
         PrintStream p = new PrintStream(new ByteArrayOutputStream());
@@ -269,6 +723,48 @@ class ServerApplicationTest {
         assertEquals(str,new String(m.getBody()));
     }
 
+    @Test
+    void respondsWithIndexHTMLAtTheRoot(@TempDir Path root) throws BadUsageException, IOException, BadRequestException {
+        String str = "<h1>Root index</h1>";
+        Files.write(root.resolve("index.html"),str.getBytes());
+        PrintStream p = new PrintStream(new ByteArrayOutputStream());
+        String[][] options = {{"-p","8155","-c","32"},{"-p","8156","-c","0"}};
+        for (String[] option : options) {
+            ServerApplication s = new ServerApplication(new String[]{option[0],option[1],option[2],option[3],"-r",root.toString()},p);
+            s.run();
+
+            Socket socket1 = new Socket();
+            socket1.connect(s.getServer().socketAddress());
+            socket1.getOutputStream().write("GET / HTTP/1.1\r\nHost: me\r\n\r\n".getBytes());
+            HttpMessage m = new HttpMessage(socket1.getInputStream());
+            assertEquals("HTTP/1.1 200 OK",m.getStartLine());
+            assertEquals(str,new String(m.getBody()));
+            s.getServer().stop();
+        }
+    }
+
+    @Test
+    void refusesPathsOutsideTheRoot(@TempDir Path parent) throws BadUsageException, IOException, BadRequestException {
+        Path root = Files.createDirectory(parent.resolve("served"));
+        Files.write(parent.resolve("secret.txt"),"secret".getBytes());
+        PrintStream p = new PrintStream(new ByteArrayOutputStream());
+        String[][] options = {{"-p","8157","-c","32","-m","read"},{"-p","8158","-c","0","-m","read"},{"-p","8159","-c","32","-m","mmap"}};
+        for (String[] option : options) {
+            String[] args = Arrays.copyOf(option,8);
+            args[6] = "-r";
+            args[7] = root.toString();
+            ServerApplication s = new ServerApplication(args,p);
+            s.run();
+
+            Socket socket1 = new Socket();
+            socket1.connect(s.getServer().socketAddress());
+            socket1.getOutputStream().write("GET /../secret.txt HTTP/1.1\r\nHost: me\r\n\r\n".getBytes());
+            HttpMessage m = new HttpMessage(socket1.getInputStream());
+            assertEquals("HTTP/1.1 404 Not Found",m.getStartLine());
+            s.getServer().stop();
+        }
+    }
+
     @Test
     void formatsAnInstant() {
         Instant i1 = Instant.EPOCH;
@@ -0,0 +1,123 @@
+package server;
+
+import org.httpserver.BadRequestException;
+import org.httpserver.HttpMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccessLogTest {
+
+    @TempDir
+    Path root;
+
+    private static HttpMessage request(String uri) throws BadRequestException {
+        return new HttpMessage("GET /" + uri + " HTTP/1.1\r\nHost: me\r\n\r\n");
+    }
+    private static HttpMessage response(String startLine, String length) {
+        HttpMessage res = new HttpMessage();
+        res.setStartLine(startLine);
+        if (length != null) res.putHeader("Content-Length", length);
+        return res;
+    }
+    private static void hammer(AccessLog log, int threads, int each) throws Exception {
+        HttpMessage req = request("x");
+        HttpMessage res = response("HTTP/1.1 200 OK", "1");
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(()-> {
+                for (int i = 0; i < each; i++)
+                    log.log("127.0.0.1", req, res, 1000);
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers)
+            worker.join();
+    }
+
+    @Test
+    void writesCommonLogFormatLines() throws Exception {
+        Path file = root.resolve("access.log");
+        AccessLog log = new AccessLog(file, AccessLog.Overflow.Drop, 10);
+        assertTrue(log.log("10.0.0.1", request("hello?x=1"), response("HTTP/1.1 200 OK", "42"), 1_234_567));
+        assertTrue(log.log(null, request("missing"), response("HTTP/1.1 404 Not Found", null), 5_000));
+        log.close();
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.ISO_8859_1);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).matches("10\\.0\\.0\\.1 - - \\[\\d\\d/\\w{3}/\\d{4}:\\d\\d:\\d\\d:\\d\\d \\+0000] \"GET /hello\\?x=1 HTTP/1\\.1\" 200 42 1\\.234"), lines.get(0));
+        assertTrue(lines.get(1).startsWith("- - - ["));
+        assertTrue(lines.get(1).endsWith("\"GET /missing HTTP/1.1\" 404 - 0.005"));
+        assertEquals(2, log.written());
+        assertFalse(log.log("10.0.0.1", request("late"), response("HTTP/1.1 200 OK", "1"), 1));
+        assertEquals(1, log.dropped());
+    }
+
+    @Test
+    void dropsAndCountsWhenFull() throws Exception {
+        AccessLog log = new AccessLog(root.resolve("access.log"), AccessLog.Overflow.Drop, 1, 2, 1 << 30, 1);
+        hammer(log, 4, 5000);
+        log.close();
+        assertEquals(20000, log.written() + log.dropped());
+        assertEquals(log.written(), Files.readAllLines(root.resolve("access.log")).size());
+    }
+
+    @Test
+    void blocksWhenFull() throws Exception {
+        AccessLog log = new AccessLog(root.resolve("access.log"), AccessLog.Overflow.Block, 1, 2, 1 << 30, 1);
+        hammer(log, 4, 5000);
+        log.close();
+        assertEquals(0, log.dropped());
+        assertEquals(20000, Files.readAllLines(root.resolve("access.log")).size());
+    }
+
+    @Test
+    void releasesBlockedProducersWhenClosed() throws Exception {
+        AccessLog log = new AccessLog(root.resolve("access.log"), AccessLog.Overflow.Block, 1, 2, 1 << 30, 1);
+        Thread producers = new Thread(()-> {
+            try {
+                hammer(log, 4, 50000);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        producers.start();
+        Thread.sleep(50);
+        log.close();
+        producers.join(5000);
+        assertFalse(producers.isAlive());
+        assertEquals(200000, log.written() + log.dropped());
+        assertEquals(log.written(), Files.readAllLines(root.resolve("access.log")).size());
+    }
+
+    @Test
+    void rotatesFiles() throws Exception {
+        Path file = root.resolve("access.log");
+        AccessLog log = new AccessLog(file, AccessLog.Overflow.Block, 1, 16, 100, 2);
+        for (int i = 1; i <= 5; i++) {
+            log.log("127.0.0.1", request("page" + i), response("HTTP/1.1 200 OK", "1"), 1000);
+            long deadline = System.currentTimeMillis() + 2000;
+            while (log.written() < i && System.currentTimeMillis() < deadline)
+                Thread.sleep(1);
+        }
+        log.close();
+        assertTrue(new String(Files.readAllBytes(file)).contains("/page5 "));
+        assertTrue(new String(Files.readAllBytes(root.resolve("access.log.1"))).contains("/page4 "));
+        assertTrue(new String(Files.readAllBytes(root.resolve("access.log.2"))).contains("/page3 "));
+        assertFalse(Files.exists(root.resolve("access.log.3")));
+    }
+
+    @Test
+    void rejectsCapacitiesThatAreNotPowersOfTwo() {
+        assertThrows(IllegalArgumentException.class, ()->new AccessLog(root.resolve("a.log"), AccessLog.Overflow.Drop, 1, 3, 100, 1));
+    }
+}
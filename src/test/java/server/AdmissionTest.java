@@ -0,0 +1,47 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionTest {
+
+    @Test
+    void admitsUpToMaxConnections() {
+        Admission admission = new Admission(2,0,1);
+        assertTrue(admission.admit("a"));
+        assertTrue(admission.admit("b"));
+        assertFalse(admission.admit("c"));
+        assertEquals(2,admission.inFlight());
+        admission.release("a");
+        assertTrue(admission.admit("c"));
+    }
+
+    @Test
+    void limitsConnectionsPerClient() {
+        Admission admission = new Admission(0,1,1);
+        assertTrue(admission.admit("a"));
+        assertFalse(admission.admit("a"));
+        assertTrue(admission.admit("b"));
+        assertEquals(1,admission.inFlight("a"));
+        assertEquals(2,admission.inFlight());
+        admission.release("a");
+        assertEquals(0,admission.inFlight("a"));
+        assertTrue(admission.admit("a"));
+    }
+
+    @Test
+    void admitsEverythingWhenUnlimited() {
+        Admission admission = Admission.unlimited();
+        for (int i = 0; i < 1000; i++)
+            assertTrue(admission.admit("a"));
+        assertEquals(1000,admission.inFlight());
+    }
+
+    @Test
+    void rejectsWithRetryAfter() {
+        String rejection = new String(new Admission(1,0,7).rejection().head(false));
+        assertTrue(rejection.startsWith(Admission.ServiceUnavailable));
+        assertTrue(rejection.contains("Retry-After: 7"));
+    }
+}
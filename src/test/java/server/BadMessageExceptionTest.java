@@ -0,0 +1,20 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BadMessageExceptionTest {
+
+    @Test
+    void createsMessage() {
+        BadMessageException b = new BadMessageException();
+        assertEquals("HTTP/1.1 400 Bad Request\r\n\r\n",b.getMessage());
+    }
+
+    @Test
+    void createsMessageWithStatus() {
+        BadMessageException b = new BadMessageException(BadMessageException.PayloadTooLarge);
+        assertEquals("HTTP/1.1 413 Payload Too Large\r\n\r\n",b.getMessage());
+    }
+}
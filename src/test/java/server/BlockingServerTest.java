@@ -0,0 +1,423 @@
+package server;
+
+import org.httpserver.BadRequestException;
+import org.httpserver.HttpMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockingServerTest {
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1)
+            out.write(buffer,0,n);
+        return out.toByteArray();
+    }
+
+    private BlockingServer pingServer(int port, Executor executor) throws IOException {
+        BlockingServer s = new BlockingServer(new InetSocketAddress("127.0.0.1",port));
+        s.setPrintStream(new PrintStream(new ByteArrayOutputStream()));
+        s.setConnectionExecutor(executor);
+        s.initialize();
+        s.onConnection((req)-> {
+            try {Thread.sleep(1000);} catch (Exception ignored) {}
+            HttpMessage res = new HttpMessage();
+            res.setStartLine(HttpMessage.HttpOK);
+            res.putHeader("Content-Length","4");
+            res.setBody("pong");
+            return res;
+        });
+        s.run();
+        return s;
+    }
+
+    private Duration pingConcurrently(BlockingServer s, int clients) throws IOException, BadRequestException {
+        Instant start = Instant.now();
+        List<Socket> sockets = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            Socket socket = new Socket();
+            socket.connect(s.socketAddress());
+            socket.getOutputStream().write("GET /ping HTTP/1.1\r\nHost: me\r\nConnection: close\r\n\r\n".getBytes());
+            sockets.add(socket);
+        }
+        for (Socket socket : sockets)
+            assertEquals("pong",new String(new HttpMessage(socket.getInputStream()).getBody()));
+        return Duration.between(start,Instant.now());
+    }
+
+    @Test
+    void respondsWithReturnValueOfOnConnection() throws IOException, BadRequestException {
+        BlockingServer s = new BlockingServer(new InetSocketAddress("127.0.0.1",8110));
+        s.setPrintStream(new PrintStream(new ByteArrayOutputStream()));
+        s.initialize();
+        HttpMessage m1 = new HttpMessage("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nhi");
+        s.onConnection((req)->m1);
+        s.run();
+
+        Socket socket1 = new Socket();
+        socket1.connect(s.socketAddress());
+        socket1.getOutputStream().write("GET / HTTP/1.1\r\nHost: me\r\n\r\n".getBytes());
+        HttpMessage m2 = new HttpMessage(socket1.getInputStream());
+        assertEquals(m1.getStartLine(),m2.getStartLine());
+        assertEquals("hi",new String(m2.getBody()));
+        s.stop();
+    }
+
+    @Test
+    void respondsToBadRequest() throws IOException, BadRequestException {
+        BlockingServer s = new BlockingServer(new InetSocketAddress("127.0.0.1",8111));
+        s.setPrintStream(new PrintStream(new ByteArrayOutputStream()));
+        s.initialize();
+        s.onConnection((req)->new HttpMessage());
+        s.run();
+
+        Socket socket1 = new Socket();
+        socket1.connect(s.socketAddress());
+        socket1.getOutputStream().write("GET / HTTP/1.1\r\n\r\n".getBytes());
+        assertEquals("HTTP/1.1 400 Bad Request",new HttpMessage(socket1.getInputStream()).getStartLine());
+        s.stop();
+    }
+
+    @Test
+    void holdsManyPingsWithThreadPerConnection() throws IOException, BadRequestException {
+        BlockingServer s = pingServer(8112,ConnectionExecutors.threadPerConnection());
+        assertTrue(pingConcurrently(s,50).getSeconds() < 3);
+        s.stop();
+    }
+
+    @Test
+    void holdsManyPingsWithVirtualThreads() throws IOException, BadRequestException {
+        BlockingServer s = pingServer(8113,ConnectionExecutors.virtual());
+        assertTrue(pingConcurrently(s,50).getSeconds() < 3);
+        s.stop();
+    }
+
+    @Test
+    void holdsAtMostPoolSizePingsAtOnce() throws IOException, BadRequestException {
+        BlockingServer s = pingServer(8114,ConnectionExecutors.pool(2));
+        Duration d = pingConcurrently(s,6);
+        assertTrue(d.getSeconds() >= 3);
+        assertTrue(d.getSeconds() < 5);
+        s.stop();
+    }
+
+    private BlockingServer uriServer(int port) throws IOException {
+        BlockingServer s = new BlockingServer(new InetSocketAddress("127.0.0.1",port));
+        s.setPrintStream(new PrintStream(new ByteArrayOutputStream()));
+        s.initialize();
+        s.onConnection((req)-> {
+            HttpMessage res = new HttpMessage();
+            res.setStartLine(HttpMessage.HttpOK);
+            res.setBody(req.getURI());
+            return res;
+        });
+        s.run();
+        return s;
+    }
+
+    @Test
+    void answersPipelinedRequestsInOrderOnOneConnection() throws IOException, BadMessageException {
+        BlockingServer s = uriServer(8115);
+        Socket socket1 = new Socket();
+        socket1.connect(s.socketAddress());
+        socket1.getOutputStream().write(("GET /one HTTP/1.1\r\nHost: me\r\n\r\n" +
+                "GET /two HTTP/1.1\r\nHost: me\r\n\r\n" +
+                "GET /three HTTP/1.1\r\nHost: me\r\nConnection: close\r\n\r\n").getBytes());
+
+        MessageReader r = new MessageReader(socket1.getInputStream());
+        HttpMessage m1 = r.read();
+        assertEquals("one",new String(m1.getBody()));
+        assertEquals("keep-alive",m1.getHeaderFields().get("Connection"));
+        assertEquals("two",new String(r.read().getBody()));
+        HttpMessage m3 = r.read();
+        assertEquals("three",new String(m3.getBody()));
+        assertEquals("close",m3.getHeaderFields().get("Connection"));
+        assertNull(r.read());
+        s.stop();
+    }
+
+    @Test
+    void closesHttp10Connections() throws IOException, BadMessageException {
+        BlockingServer s = uriServer(8116);
+        Socket socket1 = new Socket();
+        socket1.connect(s.socketAddress());
+        socket1.getOutputStream().write("GET /old HTTP/1.0\r\nHost: me\r\n\r\n".getBytes());
+
+        MessageReader r = new MessageReader(socket1.getInputStream());
+        assertEquals("close",r.read().getHeaderFields().get("Connection"));
+        assertNull(r.read());
+        s.stop();
+    }
+
+    @Test
+    void capsRequestsPerConnection() throws IOException, BadMessageException {
+        BlockingServer s = uriServer(8117);
+        s.setKeepAlive(5000,2);
+        Socket socket1 = new Socket();
+        socket1.connect(s.socketAddress());
+        socket1.getOutputStream().write(("GET /one HTTP/1.1\r\nHost: me\r\n\r\n" +
+                "GET /two HTTP/1.1\r\nHost: me\r\n\r\n").getBytes());
+
+        MessageReader r = new MessageReader(socket1.getInputStream());
+        assertEquals("keep-alive",r.read().getHeaderFields().get("Connection"));
+        assertEquals("close",r.read().getHeaderFields().get("Connection"));
+        assertNull(r.read());
+        s.stop();
+    }
+
+    @Test
+    void closesIdleConnections() throws IOException, BadMessageException {
+        BlockingServer s = uriServer(8118);
+        s.setKeepAlive(200,100);
+        Socket socket1 = new Socket();
+        socket1.connect(s.socketAddress());
+        socket1.getOutputStream().write("GET /one HTTP/1.1\r\nHost: me\r\n\r\n".getBytes());
+
+        MessageReader r = new MessageReader(socket1.getInputStream());
+        assertEquals("one",new String(r.read().getBody()));
+        assertNull(r.read());
+        s.stop();
+    }
+
+    @Test
+    void respondsWithAsyncResults() throws IOException, BadMessageException {
+        BlockingServer s = new BlockingServer(new InetSocketAddress("127.0.0.1",8119));
+        s.setPrintStream(new PrintStream(new ByteArrayOutputStream()));
+        s.initialize();
+        s.onConnectionAsync((req)->CompletableFuture.supplyAsync(()-> {
+            HttpMessage res = new HttpMessage();
+            res.setStartLine(HttpMessage.HttpOK);
+            res.setBody("later");
+            return res;
+        }));
+        s.run();
+
+        Socket socket1 = new Socket();
+        socket1.connect(s.socketAddress());
+        socket1.getOutputStream().write("GET / HTTP/1.1\r\nHost: me\r\n\r\n".getBytes());
+        assertEquals("later",new String(new MessageReader(socket1.getInputStream()).read().getBody()));
+        s.stop();
+    }
+
+    @Test
+    void streamsChunkedResponsesAndReadsChunkedUploads() throws IOException, BadMessageException {
+        BlockingServer s = new BlockingServer(new InetSocketAddress("127.0.0.1",8130));
+        s.setPrintStream(new PrintStream(new ByteArrayOutputStream()));
+        s.initialize();
+        s.onConnection((req)-> {
+            StreamingMessage res = new StreamingMessage((out)-> {
+                for (int i = 0; i < 3; i++)
+                    out.write(req.getBody());
+            });
+            res.setStartLine(HttpMessage.HttpOK);
+            return res;
+        });
+        s.run();
+
+        Socket socket1 = new Socket();
+        socket1.connect(s.socketAddress());
+        socket1.getOutputStream().write(("POST / HTTP/1.1\r\nHost: me\r\nTransfer-Encoding: chunked\r\n\r\n" +
+                "3\r\nab-\r\n0\r\n\r\n").getBytes());
+        MessageReader reader = new MessageReader(socket1.getInputStream());
+        HttpMessage m = reader.read();
+        assertEquals("chunked",m.getHeaderFields().get("Transfer-Encoding"));
+        assertEquals("ab-ab-ab-",new String(m.getBody()));
+
+        Socket socket2 = new Socket();
+        socket2.connect(s.socketAddress());
+        socket2.getOutputStream().write("POST / HTTP/1.0\r\nHost: me\r\nConnection: keep-alive\r\nContent-Length: 1\r\n\r\nx".getBytes());
+        String response = new String(readAll(socket2.getInputStream()));
+        assertTrue(response.startsWith("HTTP/1.1 200 OK\r\nConnection: close\r\n\r\n"));
+        assertTrue(response.endsWith("\r\n\r\nxxx"));
+        s.stop();
+    }
+
+    @Test
+    void gathersHeadsAndBodiesOfAnySize() throws IOException, BadMessageException {
+        BlockingServer s = new BlockingServer(new InetSocketAddress("127.0.0.1",8136));
+        s.setPrintStream(new PrintStream(new ByteArrayOutputStream()));
+        s.setSocketOptions(true,32768);
+        s.initialize();
+        byte[] large = new byte[200000];
+        for (int i = 0; i < large.length; i++)
+            large[i] = (byte) i;
+        s.onConnection((req)-> {
+            HttpMessage res = new HttpMessage();
+            res.setStartLine(HttpMessage.HttpOK);
+            res.setBody(req.getURI().endsWith("large") ? large : "small".getBytes());
+            return res;
+        });
+        s.run();
+
+        Socket socket1 = new Socket();
+        socket1.connect(s.socketAddress());
+        socket1.getOutputStream().write("GET /small HTTP/1.1\r\nHost: me\r\n\r\nGET /large HTTP/1.1\r\nHost: me\r\n\r\n".getBytes());
+        MessageReader reader = new MessageReader(socket1.getInputStream());
+        assertEquals("small",new String(reader.read().getBody()));
+        assertArrayEquals(large,reader.read().getBody());
+        s.stop();
+    }
+
+    @Test
+    void sendsFilesStraightToTheSocketChannel(@TempDir Path root) throws IOException, BadMessageException {
+        Path file = root.resolve("large.bin");
+        byte[] large = new byte[300000];
+        for (int i = 0; i < large.length; i++)
+            large[i] = (byte) (i * 7);
+        Files.write(file,large);
+        BlockingServer s = new BlockingServer(new InetSocketAddress("127.0.0.1",8162));
+        s.setPrintStream(new PrintStream(new ByteArrayOutputStream()));
+        s.initialize();
+        assertNotNull(s.getServer().getChannel());
+        s.onConnection((req)-> {
+            FileMessage res = new FileMessage(file,0,large.length);
+            res.setStartLine(HttpMessage.HttpOK);
+            res.putHeader("Content-Length",String.valueOf(large.length));
+            return res;
+        });
+        s.run();
+
+        Socket socket1 = new Socket();
+        socket1.connect(s.socketAddress());
+        socket1.getOutputStream().write("GET /large HTTP/1.1\r\nHost: me\r\n\r\n".getBytes());
+        assertArrayEquals(large,new MessageReader(socket1.getInputStream()).read().getBody());
+        assertTrue(s.getMetrics().bytesOut() > large.length);
+        s.stop();
+    }
+
+    @Test
+    void rejectsConnectionsOverTheLimitWithServiceUnavailable() throws IOException, BadMessageException {
+        BlockingServer s = pingServer(8142,ConnectionExecutors.threadPerConnection());
+        s.setAdmission(new Admission(1,0,3));
+        Socket socket1 = new Socket();
+        socket1.connect(s.socketAddress());
+        socket1.getOutputStream().write("GET /ping HTTP/1.1\r\nHost: me\r\nConnection: close\r\n\r\n".getBytes());
+        Socket socket2 = new Socket();
+        socket2.connect(s.socketAddress());
+        socket2.getOutputStream().write("GET /ping HTTP/1.1\r\nHost: me\r\n\r\n".getBytes());
+
+        HttpMessage rejected = new MessageReader(socket2.getInputStream()).read();
+        assertEquals(Admission.ServiceUnavailable,rejected.getStartLine());
+        assertEquals("3",rejected.getHeaderFields().get("Retry-After"));
+        assertEquals("pong",new String(new MessageReader(socket1.getInputStream()).read().getBody()));
+        assertEquals(1,s.getMetrics().rejectedConnections());
+        s.stop();
+    }
+
+    @Test
+    void closesConnectionsThatTrickleHeaders() throws IOException, BadMessageException, InterruptedException {
+        BlockingServer s = uriServer(8144);
+        s.setTimeouts(300,1000,1000);
+        Socket socket1 = new Socket();
+        socket1.connect(s.socketAddress());
+        socket1.getOutputStream().write("GET /one HTTP/1.1\r\n".getBytes());
+        Thread.sleep(150);
+        socket1.getOutputStream().write("Host: me\r\n".getBytes());
+
+        assertNull(new MessageReader(socket1.getInputStream()).read());
+        assertEquals(1,s.getMetrics().timeouts(Phase.Header));
+        s.stop();
+    }
+
+    @Test
+    void closesConnectionsThatStopReading() throws IOException, InterruptedException {
+        BlockingServer s = new BlockingServer(new InetSocketAddress("127.0.0.1",8147));
+        s.setPrintStream(new PrintStream(new ByteArrayOutputStream()));
+        s.setSocketOptions(true,16384);
+        s.setTimeouts(1000,1000,300);
+        s.initialize();
+        byte[] large = new byte[32 * 1024 * 1024];
+        s.onConnection((req)-> {
+            HttpMessage res = new HttpMessage();
+            res.setStartLine(HttpMessage.HttpOK);
+            res.setBody(large);
+            return res;
+        });
+        s.run();
+        Socket socket1 = new Socket();
+        socket1.setReceiveBufferSize(16384);
+        socket1.connect(s.socketAddress());
+        socket1.getOutputStream().write("GET /large HTTP/1.1\r\nHost: me\r\n\r\n".getBytes());
+
+        Instant deadline = Instant.now().plusSeconds(5);
+        while (s.getMetrics().timeouts(Phase.Write) == 0 && Instant.now().isBefore(deadline))
+            Thread.sleep(50);
+        assertEquals(1,s.getMetrics().timeouts(Phase.Write));
+        socket1.close();
+        s.stop();
+    }
+
+    @Test
+    void drainsInFlightRequestsBeforeStopping() throws IOException, BadMessageException, InterruptedException {
+        BlockingServer s = pingServer(8148,ConnectionExecutors.threadPerConnection());
+        Socket socket1 = new Socket();
+        socket1.connect(s.socketAddress());
+        socket1.getOutputStream().write("GET /ping HTTP/1.1\r\nHost: me\r\n\r\n".getBytes());
+        Thread.sleep(100);
+        CompletableFuture<Boolean> drained = CompletableFuture.supplyAsync(() -> s.drain(5000));
+
+        MessageReader reader = new MessageReader(socket1.getInputStream());
+        HttpMessage res = reader.read();
+        assertEquals("pong",new String(res.getBody()));
+        assertEquals("close",res.getHeaderFields().get("Connection"));
+        assertNull(reader.read());
+        assertTrue(drained.join());
+        assertThrows(IOException.class,() -> new Socket().connect(new InetSocketAddress("127.0.0.1",8148)));
+    }
+
+    @Test
+    void forceClosesConnectionsStillBusyAtTheDrainDeadline() throws IOException, BadMessageException, InterruptedException {
+        BlockingServer s = pingServer(8149,ConnectionExecutors.threadPerConnection());
+        Socket socket1 = new Socket();
+        socket1.connect(s.socketAddress());
+        socket1.getOutputStream().write("GET /ping HTTP/1.1\r\nHost: me\r\n\r\n".getBytes());
+        Thread.sleep(100);
+
+        assertFalse(s.drain(200));
+        assertNull(new MessageReader(socket1.getInputStream()).read());
+    }
+
+    @Test
+    void drainClosesIdleKeepAliveConnections() throws IOException, BadMessageException {
+        BlockingServer s = uriServer(8151);
+        Socket socket1 = new Socket();
+        socket1.connect(s.socketAddress());
+        socket1.getOutputStream().write("GET /one HTTP/1.1\r\nHost: me\r\n\r\n".getBytes());
+        MessageReader reader = new MessageReader(socket1.getInputStream());
+        assertEquals("one",new String(reader.read().getBody()));
+
+        Instant start = Instant.now();
+        assertTrue(s.drain(5000));
+        assertTrue(Duration.between(start,Instant.now()).toMillis() < 2000);
+        assertNull(reader.read());
+    }
+
+    @Test
+    void rejectsOversizedBodiesWithoutAllocatingThem() throws IOException, BadMessageException {
+        BlockingServer s = uriServer(8152);
+        Socket socket1 = new Socket();
+        socket1.connect(s.socketAddress());
+        socket1.getOutputStream().write("POST /guess HTTP/1.1\r\nHost: me\r\nContent-Length: 2000000000\r\n\r\n".getBytes());
+        assertEquals(BadMessageException.PayloadTooLarge,new MessageReader(socket1.getInputStream()).read().getStartLine());
+        s.stop();
+    }
+}
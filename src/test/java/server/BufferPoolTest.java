@@ -0,0 +1,98 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BufferPoolTest {
+
+    @Test
+    void roundsUpToSizeClasses() {
+        BufferPool pool = new BufferPool(true,false);
+        assertEquals(4096,pool.acquire(1).capacity());
+        assertEquals(16384,pool.acquire(4097).capacity());
+        assertEquals(65536,pool.acquire(65536).capacity());
+        assertEquals(100000,pool.acquire(100000).capacity());
+        assertTrue(pool.acquire(10).isDirect());
+        assertFalse(new BufferPool(false,false).acquire(10).isDirect());
+    }
+
+    @Test
+    void reusesReleasedBuffers() {
+        BufferPool pool = new BufferPool(true,false);
+        ByteBuffer first = pool.acquire(100);
+        first.put((byte) 1);
+        pool.release(first);
+        ByteBuffer second = pool.acquire(200);
+        assertSame(first,second);
+        assertEquals(0,second.position());
+        assertEquals(second.capacity(),second.limit());
+        assertEquals(1,pool.hits());
+        assertEquals(1,pool.misses());
+    }
+
+    @Test
+    void sharesBuffersAcrossThreads() throws InterruptedException {
+        BufferPool pool = new BufferPool(false,false);
+        ByteBuffer[] acquired = new ByteBuffer[BufferPool.ThreadCacheSize + 1];
+        for (int i = 0; i < acquired.length; i++)
+            acquired[i] = pool.acquire(100);
+        for (ByteBuffer buffer : acquired)
+            pool.release(buffer);
+        ByteBuffer[] other = new ByteBuffer[1];
+        Thread t = new Thread(()->other[0] = pool.acquire(100));
+        t.start();
+        t.join();
+        assertSame(acquired[acquired.length - 1],other[0]);
+    }
+
+    @Test
+    void flushesThreadCachesBeforeShortLivedThreadsExit() throws InterruptedException {
+        BufferPool pool = new BufferPool(false,false);
+        ByteBuffer[] released = new ByteBuffer[1];
+        Thread t = new Thread(()-> {
+            released[0] = pool.acquire(100);
+            pool.release(released[0]);
+            pool.flushThreadCache();
+        });
+        t.start();
+        t.join();
+        assertEquals(1,pool.shared());
+        assertSame(released[0],pool.acquire(100));
+        assertEquals(1,pool.hits());
+    }
+
+    @Test
+    void ignoresForeignBuffers() {
+        BufferPool pool = new BufferPool(true,false);
+        pool.release(ByteBuffer.allocate(4096));
+        pool.release(ByteBuffer.allocateDirect(5000));
+        pool.release(null);
+        pool.acquire(10);
+        assertEquals(0,pool.hits());
+    }
+
+    @Test
+    void detectsDoubleReleaseAndLeaks() throws InterruptedException {
+        BufferPool pool = new BufferPool(true,true);
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        pool.setPrintStream(new PrintStream(log));
+        ByteBuffer buffer = pool.acquire(10);
+        assertEquals(1,pool.outstanding());
+        pool.release(buffer);
+        assertThrows(IllegalStateException.class,()->pool.release(buffer));
+
+        pool.acquire(10);
+        pool.acquire(10);
+        for (int i = 0; i < 50 && pool.leaks() < 1; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertTrue(pool.leaks() >= 1);
+        assertTrue(log.toString().contains("never released"));
+    }
+}
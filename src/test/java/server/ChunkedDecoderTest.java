@@ -0,0 +1,78 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedDecoderTest {
+
+    private static final byte[] Body = ("5\r\nhello\r\n" +
+            "1;name=value\r\n \r\n" +
+            "5\r\nworld\r\n" +
+            "0\r\nTrailer: yes\r\n\r\n").getBytes();
+
+    @Test
+    void decodesWholeBody() throws BadMessageException {
+        ChunkedDecoder d = new ChunkedDecoder(1024);
+        assertEquals(Body.length,d.decode(Body,0,Body.length));
+        assertTrue(d.isDone());
+        assertEquals("hello world",new String(d.body()));
+    }
+
+    @Test
+    void decodesOneByteAtATime() throws BadMessageException {
+        ChunkedDecoder d = new ChunkedDecoder(1024);
+        for (int i = 0; i < Body.length; i++) {
+            assertFalse(d.isDone());
+            assertEquals(i + 1,d.decode(Body,i,i + 1));
+        }
+        assertTrue(d.isDone());
+        assertEquals("hello world",new String(d.body()));
+    }
+
+    @Test
+    void stopsAtEndOfMessage() throws BadMessageException {
+        byte[] bytes = "3\r\nabc\r\n0\r\n\r\nGET / HTTP/1.1\r\n".getBytes();
+        ChunkedDecoder d = new ChunkedDecoder(1024);
+        assertEquals(13,d.decode(bytes,0,bytes.length));
+        assertEquals(0,d.needs());
+    }
+
+    @Test
+    void neverNeedsMoreThanRemainsOfTheMessage() throws BadMessageException {
+        ChunkedDecoder d = new ChunkedDecoder(1024);
+        assertEquals(1,d.needs());
+        byte[] size = "a\r\n".getBytes();
+        d.decode(size,0,size.length);
+        assertEquals(10,d.needs());
+    }
+
+    @Test
+    void resetsForNextMessage() throws BadMessageException {
+        ChunkedDecoder d = new ChunkedDecoder(1024);
+        d.decode(Body,0,Body.length);
+        d.reset();
+        byte[] bytes = "2\r\nhi\r\n0\r\n\r\n".getBytes();
+        d.decode(bytes,0,bytes.length);
+        assertEquals("hi",new String(d.body()));
+    }
+
+    @Test
+    void rejectsMalformedChunks() {
+        assertThrows(BadMessageException.class,()->decode("x\r\n"));
+        assertThrows(BadMessageException.class,()->decode("\r\n"));
+        assertThrows(BadMessageException.class,()->decode("2\r\nhiX"));
+        assertThrows(BadMessageException.class,()->decode("ffffffffffffffffff\r\n"));
+    }
+
+    @Test
+    void rejectsBodiesOverLimit() {
+        assertThrows(BadMessageException.class,()->decode("401\r\n"));
+        assertDoesNotThrow(()->decode("400\r\n"));
+    }
+
+    private static void decode(String s) throws BadMessageException {
+        byte[] bytes = s.getBytes();
+        new ChunkedDecoder(1024).decode(bytes,0,bytes.length);
+    }
+}
@@ -0,0 +1,59 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedOutputStreamTest {
+
+    @Test
+    void writesBufferedChunksAndLastChunk() throws IOException {
+        ByteArrayOutputStream o = new ByteArrayOutputStream();
+        ChunkedOutputStream c = new ChunkedOutputStream(o,4);
+        c.write("ab".getBytes());
+        c.write('c');
+        c.write("de".getBytes());
+        c.write("0123456789".getBytes());
+        c.close();
+        assertEquals("3\r\nabc\r\n2\r\nde\r\na\r\n0123456789\r\n0\r\n\r\n",o.toString());
+    }
+
+    @Test
+    void flushesPartialChunks() throws IOException {
+        ByteArrayOutputStream o = new ByteArrayOutputStream();
+        ChunkedOutputStream c = new ChunkedOutputStream(o);
+        c.write("hi".getBytes());
+        c.flush();
+        assertEquals("2\r\nhi\r\n",o.toString());
+        c.flush();
+        assertEquals("2\r\nhi\r\n",o.toString());
+    }
+
+    @Test
+    void closesOnce() throws IOException {
+        ByteArrayOutputStream o = new ByteArrayOutputStream();
+        ChunkedOutputStream c = new ChunkedOutputStream(o);
+        c.close();
+        c.close();
+        assertEquals("0\r\n\r\n",o.toString());
+        assertThrows(IOException.class,()->c.write(1));
+    }
+
+    @Test
+    void roundTripsThroughDecoder() throws IOException, BadMessageException {
+        ByteArrayOutputStream o = new ByteArrayOutputStream();
+        ChunkedOutputStream c = new ChunkedOutputStream(o,16);
+        byte[] body = new byte[1000];
+        for (int i = 0; i < body.length; i++) body[i] = (byte) i;
+        for (int i = 0; i < body.length; i += 7)
+            c.write(body,i,Math.min(7,body.length - i));
+        c.close();
+        byte[] bytes = o.toByteArray();
+        ChunkedDecoder d = new ChunkedDecoder(body.length);
+        assertEquals(bytes.length,d.decode(bytes,0,bytes.length));
+        assertArrayEquals(body,d.body());
+    }
+}
@@ -0,0 +1,82 @@
+package server;
+
+import org.httpserver.BadRequestException;
+import org.httpserver.HttpMessage;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionTest {
+
+    private static HttpMessage request(String acceptEncoding) throws BadRequestException {
+        return new HttpMessage("GET / HTTP/1.1\r\nHost: me\r\nAccept-Encoding: " + acceptEncoding + "\r\n\r\n");
+    }
+    private static byte[] gunzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) != -1)
+                out.write(buffer,0,n);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void negotiatesGzip() throws BadRequestException {
+        assertTrue(Compression.acceptsGzip(request("gzip, deflate, br")));
+        assertTrue(Compression.acceptsGzip(request("br;q=1.0, GZIP;q=0.5")));
+        assertTrue(Compression.acceptsGzip(request("*")));
+        assertFalse(Compression.acceptsGzip(request("gzip;q=0")));
+        assertFalse(Compression.acceptsGzip(request("gzip;q=0, *")));
+        assertFalse(Compression.acceptsGzip(request("br, identity")));
+        assertFalse(Compression.acceptsGzip(new HttpMessage("GET / HTTP/1.1\r\nHost: me\r\n\r\n")));
+    }
+
+    @Test
+    void compressesTextualTypesOverThreshold() {
+        assertTrue(Compression.compressible("text/html; charset=utf-8"));
+        assertTrue(Compression.compressible("application/json"));
+        assertTrue(Compression.compressible("image/svg+xml"));
+        assertFalse(Compression.compressible("image/png"));
+        assertFalse(Compression.compressible(null));
+        assertFalse(Compression.worthCompressing("text/plain",Compression.MinLength - 1));
+        assertTrue(Compression.worthCompressing("text/plain",Compression.MinLength));
+    }
+
+    @Test
+    void buildsGzippedVariant() throws IOException {
+        HttpMessage res = new HttpMessage();
+        res.setStartLine(HttpMessage.HttpOK);
+        res.putHeader("Content-Type","text/plain");
+        res.putHeader("Content-Length","1000");
+        byte[] body = new byte[1000];
+        Arrays.fill(body,(byte) 'a');
+        res.setBody(body);
+
+        HttpMessage gzipped = Compression.gzipped(res);
+        assertEquals("gzip",gzipped.getHeaderFields().get("Content-Encoding"));
+        assertEquals("Accept-Encoding",gzipped.getHeaderFields().get("Vary"));
+        assertEquals("text/plain",gzipped.getHeaderFields().get("Content-Type"));
+        assertEquals(String.valueOf(gzipped.getBody().length),gzipped.getHeaderFields().get("Content-Length"));
+        assertArrayEquals(body,gunzip(gzipped.getBody()));
+    }
+
+    @Test
+    void leavesSmallOrBinaryResponsesAlone() {
+        HttpMessage small = new HttpMessage();
+        small.putHeader("Content-Type","text/plain");
+        small.setBody("hi");
+        assertSame(small,Compression.gzipped(small));
+        HttpMessage binary = new HttpMessage();
+        binary.putHeader("Content-Type","image/png");
+        binary.setBody(new byte[1000]);
+        assertSame(binary,Compression.gzipped(binary));
+    }
+}
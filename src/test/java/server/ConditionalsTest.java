@@ -0,0 +1,63 @@
+package server;
+
+import org.httpserver.BadRequestException;
+import org.httpserver.HttpMessage;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConditionalsTest {
+
+    private static HttpMessage request(String header) throws BadRequestException {
+        return new HttpMessage("GET / HTTP/1.1\r\nHost: me\r\n" + header + "\r\n\r\n");
+    }
+    private static HttpMessage file() {
+        HttpMessage res = new HttpMessage();
+        res.setStartLine(HttpMessage.HttpOK);
+        res.putHeader("ETag", Conditionals.etag(5,1000));
+        res.putHeader("Last-Modified", Conditionals.httpDate(1_700_000_000_000L));
+        res.putHeader("Cache-Control", "no-cache");
+        res.putHeader("Content-Type", "text/plain");
+        res.setBody("hello");
+        return res;
+    }
+
+    @Test
+    void buildsStrongEtagsAndHttpDates() {
+        assertEquals("\"5-3e8\"",Conditionals.etag(5,1000));
+        assertEquals("\"5-3e8-gzip\"",Conditionals.variant("\"5-3e8\"","gzip"));
+        assertEquals("Tue, 14 Nov 2023 22:13:20 GMT",Conditionals.httpDate(1_700_000_000_000L));
+        assertEquals(1_700_000_000_000L,Conditionals.parseHttpDate("Tue, 14 Nov 2023 22:13:20 GMT"));
+        assertEquals(-1,Conditionals.parseHttpDate("yesterday"));
+    }
+
+    @Test
+    void matchesIfNoneMatch() throws BadRequestException {
+        assertTrue(Conditionals.notModified(request("If-None-Match: \"5-3e8\""),file()));
+        assertTrue(Conditionals.notModified(request("If-None-Match: \"x\", W/\"5-3e8\""),file()));
+        assertTrue(Conditionals.notModified(request("If-None-Match: *"),file()));
+        assertFalse(Conditionals.notModified(request("If-None-Match: \"6-3e8\""),file()));
+    }
+
+    @Test
+    void matchesIfModifiedSinceUnlessIfNoneMatchIsPresent() throws BadRequestException {
+        assertTrue(Conditionals.notModified(request("If-Modified-Since: Tue, 14 Nov 2023 22:13:20 GMT"),file()));
+        assertTrue(Conditionals.notModified(request("If-Modified-Since: Wed, 15 Nov 2023 00:00:00 GMT"),file()));
+        assertFalse(Conditionals.notModified(request("If-Modified-Since: Tue, 14 Nov 2023 22:13:19 GMT"),file()));
+        assertFalse(Conditionals.notModified(request("If-Modified-Since: garbage"),file()));
+        assertFalse(Conditionals.notModified(new HttpMessage("GET / HTTP/1.1\r\nHost: me\r\n" +
+                "If-None-Match: \"other\"\r\nIf-Modified-Since: Wed, 15 Nov 2023 00:00:00 GMT\r\n\r\n"),file()));
+    }
+
+    @Test
+    void respondsNotModifiedWithValidatorsOnly() {
+        HttpMessage res = Conditionals.notModifiedResponse(file());
+        assertEquals("HTTP/1.1 304 Not Modified",res.getStartLine());
+        assertEquals("\"5-3e8\"",res.getHeaderFields().get("ETag"));
+        assertEquals("no-cache",res.getHeaderFields().get("Cache-Control"));
+        assertNull(res.getHeaderFields().get("Content-Type"));
+        assertNull(res.getBody());
+        assertTrue(new String(MessageWriter.head(res,true)).startsWith("HTTP/1.1 304 Not Modified\r\n"));
+        assertFalse(new String(MessageWriter.head(res,true)).contains("Content-Length"));
+    }
+}
@@ -0,0 +1,30 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionExecutorsTest {
+
+    @Test
+    void parsesPoolOption() {
+        ThreadPoolExecutor e = (ThreadPoolExecutor) ConnectionExecutors.fromOption("pool:3");
+        assertEquals(3,e.getMaximumPoolSize());
+        e.shutdown();
+    }
+
+    @Test
+    void parsesThreadsAndVirtualOptions() {
+        assertNotNull(ConnectionExecutors.fromOption("threads"));
+        assertNotNull(ConnectionExecutors.fromOption("virtual"));
+    }
+
+    @Test
+    void rejectsUnknownOptions() {
+        assertThrows(IllegalArgumentException.class,()->ConnectionExecutors.fromOption("fibers"));
+        assertThrows(IllegalArgumentException.class,()->ConnectionExecutors.fromOption("pool:0"));
+        assertThrows(IllegalArgumentException.class,()->ConnectionExecutors.fromOption("pool:x"));
+    }
+}
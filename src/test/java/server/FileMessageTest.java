@@ -0,0 +1,39 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileMessageTest {
+
+    @Test
+    void describesWholeFile() throws IOException {
+        Path p = FileSystems.getDefault().getPath("resources/test.txt");
+        FileMessage m = new FileMessage(p);
+        assertEquals(p,m.getPath());
+        assertEquals(0,m.getPosition());
+        assertEquals(5,m.getCount());
+        assertNull(m.getBody());
+    }
+
+    @Test
+    void transfersRegionToChannel() throws IOException {
+        Path p = FileSystems.getDefault().getPath("resources/test.txt");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new FileMessage(p,1,3).transferTo(Channels.newChannel(out));
+        assertEquals("ell",out.toString());
+    }
+
+    @Test
+    void failsWhenFileIsShorterThanCount() {
+        Path p = FileSystems.getDefault().getPath("resources/test.txt");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThrows(IOException.class,()->new FileMessage(p,0,10).transferTo(Channels.newChannel(out)));
+    }
+}
@@ -0,0 +1,30 @@
+package server;
+
+import org.httpserver.BadRequestException;
+import org.httpserver.HttpMessage;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeadersTest {
+
+    @Test
+    void getsHeadersIgnoringCase() throws BadRequestException {
+        HttpMessage m = new HttpMessage("GET / HTTP/1.1\r\nHost: me\r\ncontent-length: 0\r\n\r\n");
+        assertEquals("me",Headers.get(m,"host"));
+        assertTrue(Headers.has(m,"Content-Length"));
+        assertNull(Headers.get(m,"Connection"));
+    }
+
+    @Test
+    void keepsHttp11AliveUnlessClosed() throws BadRequestException {
+        assertTrue(Headers.keepAlive(new HttpMessage("GET / HTTP/1.1\r\nHost: me\r\n\r\n")));
+        assertFalse(Headers.keepAlive(new HttpMessage("GET / HTTP/1.1\r\nHost: me\r\nConnection: close\r\n\r\n")));
+    }
+
+    @Test
+    void keepsHttp10AliveOnlyWhenAsked() throws BadRequestException {
+        assertFalse(Headers.keepAlive(new HttpMessage("GET / HTTP/1.0\r\nHost: me\r\n\r\n")));
+        assertTrue(Headers.keepAlive(new HttpMessage("GET / HTTP/1.0\r\nHost: me\r\nConnection: Keep-Alive\r\n\r\n")));
+    }
+}
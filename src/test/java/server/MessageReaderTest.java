@@ -0,0 +1,88 @@
+package server;
+
+import org.httpserver.HttpMessage;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageReaderTest {
+
+    private MessageReader reader(String s) {
+        return new MessageReader(new ByteArrayInputStream(s.getBytes()));
+    }
+
+    @Test
+    void readsPipelinedMessagesInOrder() throws IOException, BadMessageException {
+        MessageReader r = reader("GET /a HTTP/1.1\r\nHost: me\r\n\r\n" +
+                "POST /b HTTP/1.1\r\nHost: me\r\nContent-Length: 5\r\n\r\nhello" +
+                "GET /c HTTP/1.1\r\nHost: me\r\n\n");
+        assertEquals("a",r.read().getURI());
+        HttpMessage m = r.read();
+        assertEquals("b",m.getURI());
+        assertEquals("hello",new String(m.getBody()));
+        assertEquals("c",r.read().getURI());
+        assertNull(r.read());
+    }
+
+    @Test
+    void readsBinaryBodies() throws IOException, BadMessageException {
+        byte[] head = "POST / HTTP/1.1\r\nHost: me\r\nContent-Length: 3\r\n\r\n".getBytes();
+        byte[] bytes = new byte[head.length + 3];
+        System.arraycopy(head,0,bytes,0,head.length);
+        bytes[head.length] = (byte) 0xff;
+        bytes[head.length + 1] = 0;
+        bytes[head.length + 2] = (byte) 0x80;
+        HttpMessage m = new MessageReader(new ByteArrayInputStream(bytes)).read();
+        assertArrayEquals(new byte[]{(byte) 0xff,0,(byte) 0x80},m.getBody());
+    }
+
+    @Test
+    void throwsBadRequestForTruncatedMessages() {
+        assertThrows(BadMessageException.class,()->reader("GET / HTTP/1.1\r\nHost: me\r\n").read());
+        assertThrows(BadMessageException.class,()->
+                reader("POST / HTTP/1.1\r\nHost: me\r\nContent-Length: 5\r\n\r\nhi").read());
+    }
+
+    @Test
+    void readsChunkedBodiesAndNextPipelinedMessage() throws IOException, BadMessageException {
+        MessageReader r = reader("POST /a HTTP/1.1\r\nHost: me\r\nTransfer-Encoding: chunked\r\n\r\n" +
+                "5\r\nhello\r\n6\r\n world\r\n0\r\n\r\n" +
+                "GET /b HTTP/1.1\r\nHost: me\r\n\r\n");
+        HttpMessage m = r.read();
+        assertEquals("hello world",new String(m.getBody()));
+        assertEquals("b",r.read().getURI());
+    }
+
+    @Test
+    void rejectsAmbiguousOrUnknownTransferEncodings() {
+        assertThrows(BadMessageException.class,()->reader("POST / HTTP/1.1\r\nHost: me\r\n" +
+                "Transfer-Encoding: chunked\r\nContent-Length: 5\r\n\r\n0\r\n\r\n").read());
+        assertThrows(BadMessageException.class,()->reader("POST / HTTP/1.1\r\nHost: me\r\n" +
+                "Transfer-Encoding: gzip\r\n\r\n").read());
+        assertThrows(BadMessageException.class,()->reader("POST / HTTP/1.1\r\nHost: me\r\n" +
+                "Transfer-Encoding: chunked\r\n\r\n5\r\nhel").read());
+    }
+
+    @Test
+    void reportsEachPhaseOfARead() throws IOException, BadMessageException {
+        MessageReader r = reader("\r\nPOST /b HTTP/1.1\r\nHost: me\r\nContent-Length: 5\r\n\r\nhello");
+        List<Phase> phases = new ArrayList<>();
+        r.setPhases(phases::add);
+        assertEquals("hello",new String(r.read().getBody()));
+        assertNull(r.read());
+        assertEquals(Arrays.asList(Phase.Idle,Phase.Header,Phase.Body,Phase.Idle),phases);
+    }
+
+    @Test
+    void rejectsContentLengthsOverTheBodyLimitBeforeReading() throws IOException {
+        MessageReader r = reader("POST /b HTTP/1.1\r\nHost: me\r\nContent-Length: 2000000000\r\n\r\nhello");
+        BadMessageException e = assertThrows(BadMessageException.class,r::read);
+        assertEquals("HTTP/1.1 413 Payload Too Large\r\n\r\n",e.getMessage());
+    }
+}
@@ -0,0 +1,51 @@
+package server;
+
+import org.httpserver.BadRequestException;
+import org.httpserver.HttpMessage;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageWriterTest {
+
+    @Test
+    void writesHeadWithConnectionAndContentLength() throws BadRequestException {
+        HttpMessage m = new HttpMessage("HTTP/1.1 200 OK\r\nConnection: keep-alive\r\n\r\n");
+        m.setBody("hello");
+        assertEquals("HTTP/1.1 200 OK\r\nContent-Length: 5\r\nConnection: close\r\n\r\n",
+                new String(MessageWriter.head(m,false)));
+    }
+
+    @Test
+    void keepsExistingContentLength() throws BadRequestException {
+        HttpMessage m = new HttpMessage("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nhi");
+        assertEquals("HTTP/1.1 200 OK\r\nContent-Length: 2\r\nConnection: keep-alive\r\n\r\n",
+                new String(MessageWriter.head(m,true)));
+    }
+
+    @Test
+    void writesStreamingHeads() throws BadRequestException {
+        HttpMessage m = new HttpMessage("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: 9\r\n\r\n");
+        assertEquals("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nTransfer-Encoding: chunked\r\nConnection: keep-alive\r\n\r\n",
+                new String(MessageWriter.streamingHead(m,true,true)));
+        assertEquals("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nConnection: close\r\n\r\n",
+                new String(MessageWriter.streamingHead(m,false,false)));
+    }
+
+    @Test
+    void writesHeadsIntoPooledBuffers() throws BadRequestException {
+        HttpMessage m = new HttpMessage("HTTP/1.1 200 OK\r\nConnection: keep-alive\r\n\r\n");
+        m.setBody("hello");
+        BufferPool pool = new BufferPool(true,true);
+        ByteBuffer head = MessageWriter.head(m,false,pool);
+        assertTrue(head.isDirect());
+        byte[] bytes = new byte[head.remaining()];
+        head.get(bytes);
+        assertArrayEquals(MessageWriter.head(m,false),bytes);
+        assertEquals(1,pool.outstanding());
+        pool.release(head);
+        assertEquals(0,pool.outstanding());
+    }
+}
@@ -0,0 +1,86 @@
+package server;
+
+import org.httpserver.BadRequestException;
+import org.httpserver.HttpMessage;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsTest {
+
+    @Test
+    void countsConnectionsAndBytes() {
+        Metrics metrics = new Metrics();
+        metrics.connectionOpened();
+        metrics.connectionOpened();
+        metrics.connectionClosed();
+        metrics.bytesIn(10);
+        metrics.bytesOut(20);
+        metrics.bytesOut(-1);
+        metrics.parseError();
+        assertEquals(2,metrics.acceptedConnections());
+        assertEquals(1,metrics.activeConnections());
+        assertEquals(10,metrics.bytesIn());
+        assertEquals(20,metrics.bytesOut());
+        assertEquals(1,metrics.parseErrors());
+    }
+
+    @Test
+    void bucketsLatencies() {
+        Histogram h = new Histogram();
+        h.record(50_000);
+        h.record(100_000);
+        h.record(3_000_000);
+        h.record(60_000_000_000L);
+        long[] cumulative = h.cumulativeCounts();
+        assertEquals(2,cumulative[0]);
+        assertEquals(2,cumulative[3]);
+        assertEquals(3,cumulative[5]);
+        assertEquals(3,cumulative[Histogram.BoundsNanos.length - 1]);
+        assertEquals(4,cumulative[Histogram.BoundsNanos.length]);
+        assertEquals(4,h.count());
+        assertEquals(60_003_150_000L,h.sumNanos());
+    }
+
+    @Test
+    void readsStatusCodes() throws BadRequestException {
+        HttpMessage res = new HttpMessage();
+        res.setStartLine("HTTP/1.1 404 Not Found");
+        assertEquals("404",Metrics.status(res));
+        res.setStartLine("HTTP/1.1 200");
+        assertEquals("200",Metrics.status(res));
+        assertEquals("500",Metrics.status(null));
+    }
+
+    @Test
+    void rendersPrometheusText() {
+        Metrics metrics = new Metrics();
+        metrics.connectionOpened();
+        metrics.request("/hello","200",2_000_000);
+        metrics.request("/hello","200",20_000_000);
+        metrics.request("/*","404",100_000);
+        String text = metrics.render();
+        assertTrue(text.contains("# TYPE http_connections_active gauge\nhttp_connections_active 1\n"));
+        assertTrue(text.contains("http_requests_total{route=\"/*\",status=\"404\"} 1\n"));
+        assertTrue(text.contains("http_requests_total{route=\"/hello\",status=\"200\"} 2\n"));
+        assertTrue(text.contains("http_request_duration_seconds_bucket{route=\"/hello\",le=\"0.0025\"} 1\n"));
+        assertTrue(text.contains("http_request_duration_seconds_bucket{route=\"/hello\",le=\"+Inf\"} 2\n"));
+        assertTrue(text.contains("http_request_duration_seconds_sum{route=\"/hello\"} 0.022\n"));
+        assertTrue(text.contains("http_request_duration_seconds_count{route=\"/hello\"} 2\n"));
+        assertTrue(text.contains("buffer_pool_hits_total{pool=\"direct\"} "));
+    }
+
+    @Test
+    void countsTimeoutsByPhase() {
+        Metrics metrics = new Metrics();
+        metrics.timedOut(Phase.Header);
+        metrics.timedOut(Phase.Header);
+        metrics.timedOut(Phase.Write);
+        assertEquals(2,metrics.timeouts(Phase.Header));
+        assertEquals(1,metrics.timeouts(Phase.Write));
+        assertEquals(0,metrics.timeouts(Phase.Idle));
+        String text = metrics.render();
+        assertTrue(text.contains("http_timeouts_total{phase=\"header\"} 2\n"));
+        assertTrue(text.contains("http_timeouts_total{phase=\"body\"} 0\n"));
+    }
+}
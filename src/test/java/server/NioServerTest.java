@@ -0,0 +1,343 @@
+package server;
+
+import org.httpserver.BadRequestException;
+import org.httpserver.HttpMessage;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.io.OutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NioServerTest {
+
+    private NioServer uriServer(int port) throws IOException {
+        NioServer s = new NioServer(new InetSocketAddress("127.0.0.1",port),2);
+        s.setPrintStream(new PrintStream(new ByteArrayOutputStream()));
+        s.initialize();
+        s.onConnection((req)-> {
+            HttpMessage res = new HttpMessage();
+            res.setStartLine(HttpMessage.HttpOK);
+            res.setBody(req.getURI());
+            return res;
+        });
+        s.run();
+        return s;
+    }
+
+    @Test
+    void initializes() throws IOException {
+        ByteArrayOutputStream o1 = new ByteArrayOutputStream();
+        InetSocketAddress a1 = new InetSocketAddress("127.0.0.1",8120);
+        NioServer s1 = new NioServer(a1);
+        s1.setPrintStream(new PrintStream(o1));
+
+        s1.initialize();
+        assertTrue(s1.isBound());
+        assertTrue(s1.isRunning());
+        assertEquals(a1,s1.socketAddress());
+        assertEquals(Runtime.getRuntime().availableProcessors(),s1.eventLoopCount());
+        assertEquals(s1.listeningString()+"\n",o1.toString());
+        s1.stop();
+        assertFalse(s1.isRunning());
+    }
+
+    @Test
+    void respondsWithReturnValueOfOnConnection() throws IOException, BadRequestException {
+        NioServer s = uriServer(8121);
+        Socket socket1 = new Socket();
+        socket1.connect(s.socketAddress());
+        socket1.getOutputStream().write("GET /hello HTTP/1.1\r\nHost: me\r\n\r\n".getBytes());
+
+        HttpMessage m = new HttpMessage(socket1.getInputStream());
+        assertEquals(HttpMessage.HttpOK,m.getStartLine());
+        assertEquals("hello",new String(m.getBody()));
+        s.stop();
+    }
+
+    @Test
+    void readsRequestsSentInPieces() throws IOException, BadMessageException, InterruptedException {
+        NioServer s = uriServer(8122);
+        Socket socket1 = new Socket();
+        socket1.connect(s.socketAddress());
+        socket1.setTcpNoDelay(true);
+        String request = "POST /slow HTTP/1.1\r\nHost: me\r\nContent-Length: 4\r\n\r\nbody";
+        for (char c : request.toCharArray()) {
+            socket1.getOutputStream().write(c);
+            Thread.sleep(2);
+        }
+        assertEquals("slow",new String(new MessageReader(socket1.getInputStream()).read().getBody()));
+        s.stop();
+    }
+
+    @Test
+    void answersPipelinedRequestsInOrder() throws IOException, BadMessageException {
+        NioServer s = uriServer(8123);
+        Socket socket1 = new Socket();
+        socket1.connect(s.socketAddress());
+        socket1.getOutputStream().write(("GET /one HTTP/1.1\r\nHost: me\r\n\r\n" +
+                "GET /two HTTP/1.1\r\nHost: me\r\n\r\n" +
+                "GET /three HTTP/1.1\r\nHost: me\r\nConnection: close\r\n\r\n").getBytes());
+
+        MessageReader r = new MessageReader(socket1.getInputStream());
+        assertEquals("one",new String(r.read().getBody()));
+        assertEquals("two",new String(r.read().getBody()));
+        HttpMessage m3 = r.read();
+        assertEquals("three",new String(m3.getBody()));
+        assertEquals("close",m3.getHeaderFields().get("Connection"));
+        assertNull(r.read());
+        s.stop();
+    }
+
+    @Test
+    void respondsToBadRequestAndCloses() throws IOException, BadMessageException {
+        NioServer s = uriServer(8124);
+        Socket socket1 = new Socket();
+        socket1.connect(s.socketAddress());
+        socket1.getOutputStream().write("GET / HTTP/1.1\r\n\r\n".getBytes());
+
+        MessageReader r = new MessageReader(socket1.getInputStream());
+        assertEquals("HTTP/1.1 400 Bad Request",r.read().getStartLine());
+        assertNull(r.read());
+        s.stop();
+    }
+
+    @Test
+    void holdsManyIdleKeepAliveConnections() throws IOException, BadMessageException {
+        NioServer s = uriServer(8125);
+        List<Socket> sockets = new ArrayList<>();
+        Instant start = Instant.now();
+        for (int i = 0; i < 200; i++) {
+            Socket socket = new Socket();
+            socket.connect(s.socketAddress());
+            socket.getOutputStream().write("GET /idle HTTP/1.1\r\nHost: me\r\n\r\n".getBytes());
+            sockets.add(socket);
+        }
+        for (Socket socket : sockets)
+            assertEquals("keep-alive",new MessageReader(socket.getInputStream()).read().getHeaderFields().get("Connection"));
+        assertTrue(Duration.between(start,Instant.now()).getSeconds() < 5);
+        s.stop();
+    }
+
+    @Test
+    void sendsFileBodiesFromDisk() throws IOException, BadMessageException {
+        NioServer s = new NioServer(new InetSocketAddress("127.0.0.1",8126),1);
+        s.setPrintStream(new PrintStream(new ByteArrayOutputStream()));
+        s.initialize();
+        Path p = FileSystems.getDefault().getPath("resources/britain.pdf");
+        s.onConnection((req)-> {
+            try {
+                FileMessage res = new FileMessage(p);
+                res.setStartLine(HttpMessage.HttpOK);
+                return res;
+            } catch (IOException e) {throw new RuntimeException(e);}
+        });
+        s.run();
+
+        Socket socket1 = new Socket();
+        socket1.connect(s.socketAddress());
+        socket1.getOutputStream().write("GET /britain.pdf HTTP/1.1\r\nHost: me\r\n\r\n".getBytes());
+        HttpMessage m = new MessageReader(socket1.getInputStream()).read();
+        assertArrayEquals(Files.readAllBytes(p),m.getBody());
+        s.stop();
+    }
+
+    @Test
+    void waitsOnAsyncResponsesWithoutHoldingThreads() throws IOException, BadMessageException {
+        NioServer s = new NioServer(new InetSocketAddress("127.0.0.1",8127),1);
+        s.setPrintStream(new PrintStream(new ByteArrayOutputStream()));
+        s.setConnectionExecutor(ConnectionExecutors.pool(1));
+        s.initialize();
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        s.onConnectionAsync((req)-> {
+            CompletableFuture<HttpMessage> future = new CompletableFuture<>();
+            timer.schedule(()-> {
+                HttpMessage res = new HttpMessage();
+                res.setStartLine(HttpMessage.HttpOK);
+                res.setBody("pong");
+                future.complete(res);
+            },1,TimeUnit.SECONDS);
+            return future;
+        });
+        s.run();
+
+        Instant start = Instant.now();
+        List<Socket> sockets = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Socket socket = new Socket();
+            socket.connect(s.socketAddress());
+            socket.getOutputStream().write("GET /ping HTTP/1.1\r\nHost: me\r\n\r\n".getBytes());
+            sockets.add(socket);
+        }
+        for (Socket socket : sockets)
+            assertEquals("pong",new String(new MessageReader(socket.getInputStream()).read().getBody()));
+        assertTrue(Duration.between(start,Instant.now()).getSeconds() < 3);
+        timer.shutdown();
+        s.stop();
+    }
+
+    @Test
+    void streamsLargeChunkedResponsesAndReadsSplitChunkedUploads() throws IOException, BadMessageException, InterruptedException {
+        NioServer s = new NioServer(new InetSocketAddress("127.0.0.1",8128),1);
+        s.setPrintStream(new PrintStream(new ByteArrayOutputStream()));
+        s.initialize();
+        byte[] block = new byte[1000];
+        for (int i = 0; i < block.length; i++) block[i] = (byte) i;
+        s.onConnection((req)-> {
+            int blocks = Integer.parseInt(new String(req.getBody()));
+            StreamingMessage res = new StreamingMessage((out)-> {
+                for (int i = 0; i < blocks; i++)
+                    out.write(block);
+            });
+            res.setStartLine(HttpMessage.HttpOK);
+            return res;
+        });
+        s.run();
+
+        Socket socket1 = new Socket();
+        socket1.connect(s.socketAddress());
+        OutputStream out = socket1.getOutputStream();
+        out.write("POST / HTTP/1.1\r\nHost: me\r\nTransfer-Encoding: chunked\r\n\r\n4\r\n20".getBytes());
+        out.flush();
+        Thread.sleep(50);
+        out.write("00\r\n0\r\n\r\nPOST / HTTP/1.1\r\nHost: me\r\nContent-Length: 1\r\n\r\n1".getBytes());
+        MessageReader reader = new MessageReader(socket1.getInputStream());
+        HttpMessage m1 = reader.read();
+        assertEquals(2000 * 1000,m1.getBody().length);
+        for (int i = 0; i < m1.getBody().length; i += 997)
+            assertEquals(block[i % 1000],m1.getBody()[i]);
+        assertEquals(1000,reader.read().getBody().length);
+        s.stop();
+    }
+
+    @Test
+    void rejectsConnectionsOverThePerClientLimit() throws IOException, BadMessageException {
+        NioServer s = uriServer(8143);
+        s.setAdmission(new Admission(0,1,1));
+        Socket socket1 = new Socket();
+        socket1.connect(s.socketAddress());
+        Socket socket2 = new Socket();
+        socket2.connect(s.socketAddress());
+        socket2.getOutputStream().write("GET /two HTTP/1.1\r\nHost: me\r\n\r\n".getBytes());
+
+        HttpMessage rejected = new MessageReader(socket2.getInputStream()).read();
+        assertEquals(Admission.ServiceUnavailable,rejected.getStartLine());
+        assertEquals("1",rejected.getHeaderFields().get("Retry-After"));
+        socket1.getOutputStream().write("GET /one HTTP/1.1\r\nHost: me\r\n\r\n".getBytes());
+        assertEquals("one",new String(new MessageReader(socket1.getInputStream()).read().getBody()));
+        socket1.close();
+        s.stop();
+    }
+
+    @Test
+    void closesIdleAndTricklingConnections() throws IOException, BadMessageException, InterruptedException {
+        NioServer s = uriServer(8145);
+        s.setKeepAlive(300,100);
+        s.setTimeouts(300,1000,1000);
+        Socket idle = new Socket();
+        idle.connect(s.socketAddress());
+        Socket trickling = new Socket();
+        trickling.connect(s.socketAddress());
+        trickling.getOutputStream().write("GET /one HTTP/1.1\r\n".getBytes());
+        Thread.sleep(150);
+        trickling.getOutputStream().write("Host: me\r\n".getBytes());
+
+        assertNull(new MessageReader(idle.getInputStream()).read());
+        assertNull(new MessageReader(trickling.getInputStream()).read());
+        assertEquals(1,s.getMetrics().timeouts(Phase.Idle));
+        assertEquals(1,s.getMetrics().timeouts(Phase.Header));
+        s.stop();
+    }
+
+    @Test
+    void closesConnectionsThatStopReading() throws IOException, InterruptedException {
+        NioServer s = new NioServer(new InetSocketAddress("127.0.0.1",8146),1);
+        s.setPrintStream(new PrintStream(new ByteArrayOutputStream()));
+        s.setSocketOptions(true,16384);
+        s.setTimeouts(1000,1000,300);
+        s.initialize();
+        byte[] large = new byte[32 * 1024 * 1024];
+        s.onConnection((req)-> {
+            HttpMessage res = new HttpMessage();
+            res.setStartLine(HttpMessage.HttpOK);
+            res.setBody(large);
+            return res;
+        });
+        s.run();
+        Socket socket1 = new Socket();
+        socket1.setReceiveBufferSize(16384);
+        socket1.connect(s.socketAddress());
+        socket1.getOutputStream().write("GET /large HTTP/1.1\r\nHost: me\r\n\r\n".getBytes());
+
+        Instant deadline = Instant.now().plusSeconds(5);
+        while (s.getMetrics().timeouts(Phase.Write) == 0 && Instant.now().isBefore(deadline))
+            Thread.sleep(50);
+        assertEquals(1,s.getMetrics().timeouts(Phase.Write));
+        socket1.close();
+        s.stop();
+    }
+
+    @Test
+    void drainsByClosingIdleConnectionsAndFinishingOthers() throws IOException, BadMessageException, InterruptedException {
+        NioServer s = uriServer(8150);
+        Socket idle = new Socket();
+        idle.connect(s.socketAddress());
+        idle.getOutputStream().write("GET /one HTTP/1.1\r\nHost: me\r\n\r\n".getBytes());
+        MessageReader idleReader = new MessageReader(idle.getInputStream());
+        assertEquals("one",new String(idleReader.read().getBody()));
+        Socket fresh = new Socket();
+        fresh.connect(s.socketAddress());
+        Thread.sleep(100);
+        CompletableFuture<Boolean> drained = CompletableFuture.supplyAsync(() -> s.drain(5000));
+
+        assertNull(idleReader.read());
+        fresh.getOutputStream().write("GET /two HTTP/1.1\r\nHost: me\r\n\r\n".getBytes());
+        HttpMessage res = new MessageReader(fresh.getInputStream()).read();
+        assertEquals("two",new String(res.getBody()));
+        assertEquals("close",res.getHeaderFields().get("Connection"));
+        assertTrue(drained.join());
+    }
+
+    @Test
+    void rejectsOversizedBodiesAndKeepsServingOtherConnections() throws IOException, BadMessageException {
+        NioServer s = new NioServer(new InetSocketAddress("127.0.0.1",8153),1);
+        s.setPrintStream(new PrintStream(new ByteArrayOutputStream()));
+        s.initialize();
+        s.onConnection((req)-> {
+            HttpMessage res = new HttpMessage();
+            res.setStartLine(HttpMessage.HttpOK);
+            res.setBody(req.getBody() == null ? "none".getBytes() : req.getBody());
+            return res;
+        });
+        s.run();
+        Socket socket1 = new Socket();
+        socket1.connect(s.socketAddress());
+        socket1.getOutputStream().write("POST /guess HTTP/1.1\r\nHost: me\r\nContent-Length: 2000000000\r\n\r\n".getBytes());
+        assertEquals(BadMessageException.PayloadTooLarge,new MessageReader(socket1.getInputStream()).read().getStartLine());
+
+        byte[] body = new byte[100000];
+        for (int i = 0; i < body.length; i++)
+            body[i] = (byte) i;
+        Socket socket2 = new Socket();
+        socket2.connect(s.socketAddress());
+        socket2.getOutputStream().write(("POST /echo HTTP/1.1\r\nHost: me\r\nContent-Length: " + body.length + "\r\n\r\n").getBytes());
+        socket2.getOutputStream().write(body);
+        assertArrayEquals(body,new MessageReader(socket2.getInputStream()).read().getBody());
+        s.stop();
+    }
+}
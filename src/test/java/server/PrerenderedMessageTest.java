@@ -0,0 +1,41 @@
+package server;
+
+import org.httpserver.BadRequestException;
+import org.httpserver.HttpMessage;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrerenderedMessageTest {
+
+    @Test
+    void serializesHeadForEachConnectionModeAndSharesTheBody() throws BadRequestException {
+        HttpMessage m = new HttpMessage("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nhi");
+        PrerenderedMessage p = new PrerenderedMessage(m);
+        assertEquals("HTTP/1.1 200 OK\r\nContent-Length: 2\r\nConnection: keep-alive\r\n\r\n",
+                new String(p.head(true)));
+        assertEquals("HTTP/1.1 200 OK\r\nContent-Length: 2\r\nConnection: close\r\n\r\n",
+                new String(p.head(false)));
+        assertSame(p.head(true),p.head(true));
+        assertSame(m.getBody(),p.body());
+        assertEquals(p.head(false).length + 2,p.length(false));
+    }
+
+    @Test
+    void keepsMessageFields() throws BadRequestException {
+        HttpMessage m = new HttpMessage("HTTP/1.1 200 OK\r\nContent-Type: text/html\r\n\r\n");
+        m.setBody("<p>hi</p>");
+        PrerenderedMessage p = new PrerenderedMessage(m);
+        assertEquals(HttpMessage.HttpOK,p.getStartLine());
+        assertEquals("text/html",p.getHeaderFields().get("Content-Type"));
+        assertEquals("<p>hi</p>",new String(p.getBody()));
+    }
+
+    @Test
+    void isImmutable() {
+        PrerenderedMessage p = new PrerenderedMessage(new HttpMessage());
+        assertThrows(UnsupportedOperationException.class,()->p.setBody("x"));
+        assertThrows(UnsupportedOperationException.class,()->p.putHeader("a","b"));
+        assertThrows(UnsupportedOperationException.class,()->p.setStartLine("HTTP/1.1 404 Not Found"));
+    }
+}
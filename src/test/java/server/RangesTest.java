@@ -0,0 +1,120 @@
+package server;
+
+import org.httpserver.BadRequestException;
+import org.httpserver.HttpMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RangesTest {
+
+    @TempDir
+    Path root;
+
+    private static HttpMessage file(String body) {
+        HttpMessage res = new HttpMessage();
+        res.setStartLine(HttpMessage.HttpOK);
+        res.putHeader("Content-Type","text/plain");
+        res.putHeader("Content-Length",String.valueOf(body.length()));
+        res.putHeader("ETag","\"a-1\"");
+        res.putHeader("Last-Modified","Tue, 14 Nov 2023 22:13:20 GMT");
+        res.setBody(body);
+        return res;
+    }
+
+    @Test
+    void parsesByteRanges() {
+        assertArrayEquals(new long[]{0,4},Ranges.parse("bytes=0-4",10).get(0));
+        assertArrayEquals(new long[]{5,9},Ranges.parse("bytes=5-",10).get(0));
+        assertArrayEquals(new long[]{7,9},Ranges.parse("bytes=-3",10).get(0));
+        assertArrayEquals(new long[]{0,9},Ranges.parse("bytes=-30",10).get(0));
+        assertArrayEquals(new long[]{8,9},Ranges.parse("bytes=8-100",10).get(0));
+        assertEquals(2,Ranges.parse("bytes=0-1, 5-6",10).size());
+    }
+
+    @Test
+    void coalescesOverlappingRanges() {
+        List<long[]> ranges = Ranges.parse("bytes=5-7,0-2,3-4,9-",10);
+        assertEquals(2,ranges.size());
+        assertArrayEquals(new long[]{0,7},ranges.get(0));
+        assertArrayEquals(new long[]{9,9},ranges.get(1));
+    }
+
+    @Test
+    void ignoresInvalidRangesAndReportsUnsatisfiableOnes() {
+        assertNull(Ranges.parse("items=0-4",10));
+        assertNull(Ranges.parse("bytes=4-2",10));
+        assertNull(Ranges.parse("bytes=a-b",10));
+        assertNull(Ranges.parse("bytes=0-1,2-3,4-5,6-7,8-9,10-11,12-13,14-15,16-17,18-19,20-21,22-23,24-25,26-27,28-29,30-31,32-33",100));
+        assertTrue(Ranges.parse("bytes=10-",10).isEmpty());
+        assertTrue(Ranges.parse("bytes=-0",10).isEmpty());
+    }
+
+    @Test
+    void honoursIfRange() throws BadRequestException {
+        HttpMessage res = file("0123456789");
+        assertTrue(Ranges.ifRangeMatches(new HttpMessage("GET / HTTP/1.1\r\nHost: me\r\n\r\n"),res));
+        assertTrue(Ranges.ifRangeMatches(new HttpMessage("GET / HTTP/1.1\r\nHost: me\r\nIf-Range: \"a-1\"\r\n\r\n"),res));
+        assertTrue(Ranges.ifRangeMatches(new HttpMessage("GET / HTTP/1.1\r\nHost: me\r\nIf-Range: Tue, 14 Nov 2023 22:13:20 GMT\r\n\r\n"),res));
+        assertFalse(Ranges.ifRangeMatches(new HttpMessage("GET / HTTP/1.1\r\nHost: me\r\nIf-Range: \"b-2\"\r\n\r\n"),res));
+        assertFalse(Ranges.ifRangeMatches(new HttpMessage("GET / HTTP/1.1\r\nHost: me\r\nIf-Range: W/\"a-1\"\r\n\r\n"),res));
+    }
+
+    @Test
+    void slicesInMemoryBodies() {
+        HttpMessage res = file("0123456789");
+        HttpMessage single = Ranges.partial(res,Ranges.parse("bytes=2-4",10),"0123456789".getBytes());
+        assertEquals("HTTP/1.1 206 Partial Content",single.getStartLine());
+        assertEquals("bytes 2-4/10",single.getHeaderFields().get("Content-Range"));
+        assertEquals("3",single.getHeaderFields().get("Content-Length"));
+        assertEquals("text/plain",single.getHeaderFields().get("Content-Type"));
+        assertEquals("\"a-1\"",single.getHeaderFields().get("ETag"));
+        assertEquals("234",new String(single.getBody()));
+
+        HttpMessage multi = Ranges.partial(res,Ranges.parse("bytes=0-1,8-",10),"0123456789".getBytes());
+        String contentType = multi.getHeaderFields().get("Content-Type");
+        assertTrue(contentType.startsWith("multipart/byteranges; boundary="));
+        String boundary = contentType.substring(contentType.indexOf('=') + 1);
+        assertEquals("\r\n--" + boundary + "\r\nContent-Type: text/plain\r\nContent-Range: bytes 0-1/10\r\n\r\n01" +
+                "\r\n--" + boundary + "\r\nContent-Type: text/plain\r\nContent-Range: bytes 8-9/10\r\n\r\n89" +
+                "\r\n--" + boundary + "--\r\n",new String(multi.getBody()));
+        assertEquals(String.valueOf(multi.getBody().length),multi.getHeaderFields().get("Content-Length"));
+    }
+
+    @Test
+    void sendsFileRegions() throws IOException {
+        Path path = root.resolve("digits.txt");
+        Files.write(path,"0123456789".getBytes());
+        FileMessage res = new FileMessage(path);
+        res.putHeader("Content-Type","text/plain");
+
+        HttpMessage single = Ranges.partial(res,Ranges.parse("bytes=-4",10));
+        assertTrue(single instanceof FileMessage);
+        assertEquals(6,((FileMessage) single).getPosition());
+        assertEquals(4,((FileMessage) single).getCount());
+        assertEquals("bytes 6-9/10",single.getHeaderFields().get("Content-Range"));
+
+        HttpMessage multi = Ranges.partial(res,Ranges.parse("bytes=1-2,5-6",10));
+        assertTrue(multi instanceof StreamingMessage);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingMessage) multi).writeTo(out,false);
+        assertEquals(((StreamingMessage) multi).getLength(),out.size());
+        assertTrue(out.toString().contains("Content-Range: bytes 1-2/10\r\n\r\n12\r\n--"));
+        assertTrue(out.toString().contains("Content-Range: bytes 5-6/10\r\n\r\n56\r\n--"));
+    }
+
+    @Test
+    void reportsUnsatisfiableRange() {
+        HttpMessage res = Ranges.unsatisfiable(file("0123456789"),10);
+        assertEquals("HTTP/1.1 416 Range Not Satisfiable",res.getStartLine());
+        assertEquals("bytes */10",res.getHeaderFields().get("Content-Range"));
+        assertEquals("0",res.getHeaderFields().get("Content-Length"));
+    }
+}
@@ -0,0 +1,88 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestParserTest {
+
+    private ParsedMessage parse(String s) throws BadMessageException {
+        byte[] bytes = s.getBytes();
+        return RequestParser.parse(bytes,0,bytes.length);
+    }
+
+    @Test
+    void parsesMessageWithMultipleHeaders() throws BadMessageException {
+        ParsedMessage m = parse("GET /hello HTTP/1.1\r\n" +
+                "Host: Goodbye\r\n" +
+                "Greetings: Java\r\n" +
+                "Greg:Hello\r\n" +
+                "\r\n");
+        assertEquals(3,m.headerCount());
+        assertEquals("GET /hello HTTP/1.1",m.getStartLine());
+        assertEquals("Goodbye",m.header("Host"));
+        assertEquals("Java",m.header("greetings"));
+        assertEquals("Hello",m.header("GREG"));
+        assertNull(m.header("Gre"));
+    }
+
+    @Test
+    void parsesMethodURIAndRequestLine() throws BadMessageException {
+        ParsedMessage m1 = parse("POST /guess HTTP/1.1\r\nHost: me\r\n\r\n");
+        assertTrue(m1.isRequest);
+        assertEquals("POST",m1.getMethod());
+        assertEquals("guess",m1.getURI());
+
+        ParsedMessage m2 = parse("HTTP/1.1 200 OK\r\n\r\n");
+        assertFalse(m2.isRequest);
+    }
+
+    @Test
+    void acceptsBareLineFeeds() throws BadMessageException {
+        ParsedMessage m = parse("GET /hello HTTP/1.1\nHost: me\n\n");
+        assertEquals("GET /hello HTTP/1.1",m.getStartLine());
+        assertEquals("me",m.header("Host"));
+    }
+
+    @Test
+    void keepsHeadersAsOffsetsUntilAskedForTheMap() throws BadMessageException {
+        ParsedMessage m = parse("GET / HTTP/1.1\r\nHost:   spaced out  \r\nAccept: */*\r\n\r\n");
+        assertEquals("spaced out",m.header("Host"));
+        assertEquals(2,m.getHeaderFields().size());
+        assertEquals("*/*",m.getHeaderFields().get("Accept"));
+        m.putHeader("Extra","1");
+        assertEquals("1",m.header("extra"));
+        assertEquals(3,m.headerCount());
+    }
+
+    @Test
+    void throwsBadRequestIfWhitespaceBeforeColon() {
+        assertThrows(BadMessageException.class,()->parse("GET /hello HTTP/1.1\r\nHost: me\r\nHello : Goodbye\r\n\r\n"));
+    }
+
+    @Test
+    void throwsBadRequestForObsoleteLineFold() {
+        assertThrows(BadMessageException.class,()->parse("GET /hello HTTP/1.1\r\nHost: me\r\nHello:\r\n Goodbye\r\n\r\n"));
+    }
+
+    @Test
+    void throwsBadRequestForNoHostHeader() {
+        assertThrows(BadMessageException.class,()->parse("GET /hello HTTP/1.1\r\nContent-Length: 5\r\n\r\n"));
+    }
+
+    @Test
+    void throwsForInvalidHttp() {
+        assertThrows(BadMessageException.class,()->parse("g"));
+        assertThrows(BadMessageException.class,()->parse("g\r\n\r\n"));
+    }
+
+    @Test
+    void findsEndOfHeadIncrementally() {
+        RequestParser p = new RequestParser();
+        byte[] bytes = "GET / HTTP/1.1\r\nHost: me\r\n\r\nbody".getBytes();
+        assertEquals(-1,p.headEnd(bytes,0,10));
+        assertEquals(-1,p.headEnd(bytes,0,27));
+        assertEquals(28,p.headEnd(bytes,0,bytes.length));
+        assertEquals(28,p.headEnd(bytes,0,bytes.length));
+    }
+}
@@ -0,0 +1,106 @@
+package server;
+
+import org.httpserver.BadRequestException;
+import org.httpserver.HttpMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouterTest {
+
+    private static Router.Handler body(String body) {
+        return (req, params) -> {
+            HttpMessage res = new HttpMessage();
+            res.setStartLine(HttpMessage.HttpOK);
+            res.setBody(body + params);
+            return CompletableFuture.completedFuture(res);
+        };
+    }
+    private static String get(Router router, String method, String uri) throws BadRequestException {
+        HttpMessage req = new HttpMessage(method + " /" + uri + " HTTP/1.1\r\nHost: me\r\n\r\n");
+        return new String(router.apply(req).join().getBody());
+    }
+
+    @Test
+    void matchesExactPaths() throws BadRequestException {
+        Router router = new Router();
+        router.add("GET", "hello", body("hello"));
+        router.add("GET", "/ping", body("ping"));
+        assertEquals("hello{}", get(router, "GET", "hello"));
+        assertEquals("ping{}", get(router, "GET", "ping"));
+        assertEquals("ping{}", get(router, "GET", "ping?x=1"));
+    }
+
+    @Test
+    void matchesParametersAndWildcards() throws BadRequestException {
+        Router router = new Router();
+        router.add("GET", "users/:id", body("user"));
+        router.add("GET", "users/me", body("me"));
+        router.add("GET", "users/:id/posts/:post", body("post"));
+        router.add("GET", "files/*", body("files"));
+        router.add("GET", "*", body("root"));
+        assertEquals("user{id=7}", get(router, "GET", "users/7"));
+        assertEquals("me{}", get(router, "GET", "users/me"));
+        assertEquals("post{post=2, id=7}", get(router, "GET", "users/7/posts/2"));
+        assertEquals("files{*=a/b.txt}", get(router, "GET", "files/a/b.txt"));
+        assertEquals("root{*=users/7/other}", get(router, "GET", "users/7/other"));
+        assertEquals("root{*=}", get(router, "GET", ""));
+    }
+
+    @Test
+    void respondsNotFoundForUnknownPaths() throws BadRequestException {
+        Router router = new Router();
+        router.add("GET", "hello", body("hello"));
+        HttpMessage res = router.apply(new HttpMessage("GET /nope HTTP/1.1\r\nHost: me\r\n\r\n")).join();
+        assertEquals("HTTP/1.1 404 Not Found", res.getStartLine());
+        assertSame(router.notFound(), res);
+    }
+
+    @Test
+    void respondsMethodNotAllowedWithAllowedMethods() throws BadRequestException {
+        Router router = new Router();
+        router.add("POST", "guess", body("post"));
+        router.add("GET", "guess", body("get"));
+        router.add(Router.AnyMethod, "any", body("any"));
+        HttpMessage res = router.apply(new HttpMessage("PUT /guess HTTP/1.1\r\nHost: me\r\n\r\n")).join();
+        assertEquals("HTTP/1.1 405 Method Not Allowed", res.getStartLine());
+        assertEquals("GET, POST", res.getHeaderFields().get("Allow"));
+        assertEquals("any{}", get(router, "DELETE", "any"));
+    }
+
+    @Test
+    void servesPrerenderedResponses() throws BadRequestException {
+        Router router = new Router();
+        HttpMessage res = new HttpMessage("HTTP/1.1 200 OK\r\n\r\n");
+        res.setBody("static");
+        router.add("GET", "static", res);
+        assertTrue(router.apply(new HttpMessage("GET /static HTTP/1.1\r\nHost: me\r\n\r\n")).join() instanceof PrerenderedMessage);
+    }
+
+    @Test
+    void rejectsConflictingParameterNames() {
+        Router router = new Router();
+        router.add("GET", "users/:id", body("user"));
+        assertThrows(IllegalArgumentException.class, () -> router.add("GET", "users/:name/posts", body("posts")));
+    }
+
+    @Test
+    void recordsRequestsByRoutePattern() throws BadRequestException {
+        Router router = new Router();
+        Metrics metrics = new Metrics();
+        router.setMetrics(metrics);
+        router.add("GET", "users/:id", body("user"));
+        router.add("GET", "*", body("static"));
+        get(router, "GET", "users/1");
+        get(router, "GET", "users/2");
+        get(router, "GET", "a/b.txt");
+        get(router, "POST", "users/1");
+        assertEquals(2, metrics.requests("/users/:id", "200"));
+        assertEquals(1, metrics.requests("/*", "200"));
+        assertEquals(1, metrics.requests("/users/:id", "405"));
+        assertEquals(3, metrics.latency("/users/:id").count());
+        assertEquals("/users/:id", router.route("users/7").pattern());
+    }
+}
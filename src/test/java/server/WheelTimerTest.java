@@ -0,0 +1,50 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WheelTimerTest {
+
+    @Test
+    void runsTasksNoSoonerThanTheirDelay() throws InterruptedException {
+        WheelTimer timer = new WheelTimer(10,8);
+        CountDownLatch fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        long[] elapsed = new long[1];
+        WheelTimer.Timeout timeout = timer.schedule(() -> {
+            elapsed[0] = System.nanoTime() - start;
+            fired.countDown();
+        },200);
+        assertTrue(fired.await(2,TimeUnit.SECONDS));
+        assertTrue(elapsed[0] >= TimeUnit.MILLISECONDS.toNanos(200));
+        assertTrue(timeout.isExpired());
+        timer.close();
+    }
+
+    @Test
+    void skipsCancelledTasks() throws InterruptedException {
+        WheelTimer timer = new WheelTimer(10,8);
+        CountDownLatch fired = new CountDownLatch(1);
+        WheelTimer.Timeout timeout = timer.schedule(fired::countDown,50);
+        assertTrue(timeout.cancel());
+        assertFalse(fired.await(300,TimeUnit.MILLISECONDS));
+        assertFalse(timeout.isExpired());
+        timer.close();
+    }
+
+    @Test
+    void cancelsTasksScheduledAfterClose() {
+        WheelTimer timer = new WheelTimer();
+        timer.close();
+        assertTrue(timer.schedule(() -> {},10).isCancelled());
+    }
+
+    @Test
+    void rejectsWheelSizesThatAreNotPowersOfTwo() {
+        assertThrows(IllegalArgumentException.class,() -> new WheelTimer(10,6));
+    }
+}